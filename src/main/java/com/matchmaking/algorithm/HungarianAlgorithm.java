@@ -0,0 +1,113 @@
+package com.matchmaking.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Min-cost perfect assignment on a square int cost matrix (Hungarian method with
+ * potentials, O(n^3)). The cost matrix and all working arrays are allocated once,
+ * so a single instance can be refilled and solved repeatedly without allocation.
+ * Not thread-safe; use one instance per thread.
+ */
+public class HungarianAlgorithm {
+    private static final int INF = Integer.MAX_VALUE / 2;
+
+    private final int size;
+    private final int[][] cost;
+    private final int[] assignment;
+
+    // Working arrays, 1-indexed; index 0 is the virtual start column
+    private final int[] rowPotential;
+    private final int[] columnPotential;
+    private final int[] columnOwner;
+    private final int[] way;
+    private final int[] minSlack;
+    private final boolean[] visited;
+
+    public HungarianAlgorithm(int size) {
+        this.size = size;
+        this.cost = new int[size][size];
+        this.assignment = new int[size];
+        this.rowPotential = new int[size + 1];
+        this.columnPotential = new int[size + 1];
+        this.columnOwner = new int[size + 1];
+        this.way = new int[size + 1];
+        this.minSlack = new int[size + 1];
+        this.visited = new boolean[size + 1];
+    }
+
+    /**
+     * Cost matrix to fill before {@link #solve()}: cost[row][column]
+     */
+    public int[][] costMatrix() {
+        return cost;
+    }
+
+    /**
+     * Solves the current cost matrix and returns the minimum total cost.
+     * Afterwards {@link #assignedColumn(int)} gives the column chosen for each row.
+     */
+    public int solve() {
+        Arrays.fill(rowPotential, 0);
+        Arrays.fill(columnPotential, 0);
+        Arrays.fill(columnOwner, 0);
+        Arrays.fill(way, 0);
+
+        for (int row = 1; row <= size; row++) {
+            columnOwner[0] = row;
+            int column = 0;
+            Arrays.fill(minSlack, INF);
+            Arrays.fill(visited, false);
+
+            // Grow an alternating tree from the new row until it reaches a free column
+            do {
+                visited[column] = true;
+                int ownerRow = columnOwner[column];
+                int delta = INF;
+                int nextColumn = 0;
+                for (int j = 1; j <= size; j++) {
+                    if (visited[j]) {
+                        continue;
+                    }
+                    int slack = cost[ownerRow - 1][j - 1] - rowPotential[ownerRow] - columnPotential[j];
+                    if (slack < minSlack[j]) {
+                        minSlack[j] = slack;
+                        way[j] = column;
+                    }
+                    if (minSlack[j] < delta) {
+                        delta = minSlack[j];
+                        nextColumn = j;
+                    }
+                }
+                for (int j = 0; j <= size; j++) {
+                    if (visited[j]) {
+                        rowPotential[columnOwner[j]] += delta;
+                        columnPotential[j] -= delta;
+                    } else {
+                        minSlack[j] -= delta;
+                    }
+                }
+                column = nextColumn;
+            } while (columnOwner[column] != 0);
+
+            // Flip the augmenting path
+            do {
+                int previous = way[column];
+                columnOwner[column] = columnOwner[previous];
+                column = previous;
+            } while (column != 0);
+        }
+
+        for (int j = 1; j <= size; j++) {
+            assignment[columnOwner[j] - 1] = j - 1;
+        }
+        return -columnPotential[0];
+    }
+
+    public int assignedColumn(int row) {
+        return assignment[row];
+    }
+
+    public int size() {
+        return size;
+    }
+}
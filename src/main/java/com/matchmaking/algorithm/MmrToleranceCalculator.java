@@ -0,0 +1,39 @@
+package com.matchmaking.algorithm;
+
+import com.matchmaking.config.MatchmakingConfig;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * MMR search radius around a player, widening with time spent in queue
+ * (PROJECT_SPEC 3.2): windowSteps holds the window for each full minute waited,
+ * the last step applying until desperationAfterSeconds, after which the full
+ * maxWindow applies. With no steps configured the window grows linearly,
+ * baseWindow plus windowExpansionPerMin per full minute. Always capped at maxWindow.
+ */
+public class MmrToleranceCalculator {
+    private final MatchmakingConfig config;
+
+    public MmrToleranceCalculator(MatchmakingConfig config) {
+        this.config = config;
+    }
+
+    public int calculate(Instant queueStartTime, Instant now) {
+        return calculate(Duration.between(queueStartTime, now));
+    }
+
+    public int calculate(Duration waitTime) {
+        long waitedSeconds = Math.max(0, waitTime.toSeconds());
+        if (waitedSeconds >= config.getDesperationAfterSeconds()) {
+            return config.getMaxWindow();
+        }
+        long minutes = waitedSeconds / 60;
+        List<Integer> steps = config.getWindowSteps();
+        long window = steps == null || steps.isEmpty()
+                ? config.getBaseWindow() + minutes * config.getWindowExpansionPerMin()
+                : steps.get((int) Math.min(minutes, steps.size() - 1));
+        return (int) Math.min(window, config.getMaxWindow());
+    }
+}
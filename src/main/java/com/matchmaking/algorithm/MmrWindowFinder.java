@@ -5,13 +5,42 @@ import com.matchmaking.model.QueueEntry;
 import com.matchmaking.model.Role;
 
 import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 
+/**
+ * Sliding window over players sorted by MMR. Each window is scored by
+ * MMR spread + 10 * missing role coverage; the lowest score wins.
+ * <p>
+ * All entry points scan in a single pass: the spread comes from the window
+ * endpoints and role counts are updated as one entry enters and one leaves,
+ * so no allocation happens per window position.
+ */
 public class MmrWindowFinder {
+    private static final int PLAYERS_PER_ROLE = 2;
+    private static final int ROLE_COVERAGE_WEIGHT = 10;
 
+    /**
+     * The chosen window. {@code windowsEvaluated} counts the window positions the search
+     * scored, {@code windowsRejected} those it scored but did not return. Windows returned
+     * by {@link #findDisjointWindows} carry 0 for both; that search reports its counts on
+     * {@link DisjointWindows}.
+     */
     public record WindowResult(
             List<QueueEntry> entries,
             int mmrSpread,
-            int roleCoverageScore
+            int roleCoverageScore,
+            int windowsEvaluated,
+            int windowsRejected
+    ) {}
+
+    /**
+     * Non-overlapping windows, best score first, with the counts of the search that packed them
+     */
+    public record DisjointWindows(
+            List<WindowResult> windows,
+            int windowsEvaluated,
+            int windowsRejected
     ) {}
 
     public Optional<WindowResult> findBestWindow(List<QueueEntry> allEntries, int windowSize) {
@@ -22,59 +51,380 @@ public class MmrWindowFinder {
         List<QueueEntry> sorted = new ArrayList<>(allEntries);
         sorted.sort(Comparator.comparingInt(e -> e.player().mmr()));
 
-        WindowResult bestWindow = null;
+        RoleCoverage coverage = new RoleCoverage();
+        int bestStart = -1;
+        int bestSpread = 0;
+        int bestCoverage = 0;
+        int bestScore = Integer.MAX_VALUE;
+        int evaluated = 0;
+
+        for (int i = 0; i < sorted.size(); i++) {
+            coverage.enter(sorted.get(i).player());
+            int start = i - windowSize + 1;
+            if (start < 0) {
+                continue;
+            }
+            if (start > 0) {
+                coverage.leave(sorted.get(start - 1).player());
+            }
+
+            evaluated++;
+            int mmrSpread = sorted.get(i).player().mmr() - sorted.get(start).player().mmr();
+            int roleCoverage = coverage.missingRoles();
+            int score = mmrSpread + roleCoverage * ROLE_COVERAGE_WEIGHT;
+
+            if (score < bestScore) {
+                bestScore = score;
+                bestStart = start;
+                bestSpread = mmrSpread;
+                bestCoverage = roleCoverage;
+            }
+        }
+
+        return Optional.of(new WindowResult(
+                new ArrayList<>(sorted.subList(bestStart, bestStart + windowSize)),
+                bestSpread,
+                bestCoverage,
+                evaluated,
+                evaluated - 1
+        ));
+    }
+
+    /**
+     * Same scoring as {@link #findBestWindow}, but for entries that are already in
+     * ascending MMR order (e.g. a repository MMR index). Walks them once through a
+     * ring buffer instead of copying and sorting the whole queue.
+     */
+    public Optional<WindowResult> findBestWindowInMmrOrder(Iterable<QueueEntry> sortedEntries, int windowSize) {
+        QueueEntry[] ring = new QueueEntry[windowSize];
+        QueueEntry[] bestEntries = new QueueEntry[windowSize];
+        RoleCoverage coverage = new RoleCoverage();
+        boolean found = false;
+        int bestSpread = 0;
+        int bestCoverage = 0;
+        int bestScore = Integer.MAX_VALUE;
+        int seen = 0;
+        int evaluated = 0;
+
+        for (QueueEntry entry : sortedEntries) {
+            int slot = seen % windowSize;
+            if (seen >= windowSize) {
+                coverage.leave(ring[slot].player());
+            }
+            ring[slot] = entry;
+            coverage.enter(entry.player());
+            seen++;
+            if (seen < windowSize) {
+                continue;
+            }
+
+            // Oldest slot of the ring holds the lowest MMR of the window
+            evaluated++;
+            int head = seen % windowSize;
+            int mmrSpread = entry.player().mmr() - ring[head].player().mmr();
+            int roleCoverage = coverage.missingRoles();
+            int score = mmrSpread + roleCoverage * ROLE_COVERAGE_WEIGHT;
+
+            if (score < bestScore) {
+                found = true;
+                bestScore = score;
+                bestSpread = mmrSpread;
+                bestCoverage = roleCoverage;
+                for (int i = 0; i < windowSize; i++) {
+                    bestEntries[i] = ring[(head + i) % windowSize];
+                }
+            }
+        }
+
+        if (!found) {
+            return Optional.empty();
+        }
+        return Optional.of(new WindowResult(new ArrayList<>(Arrays.asList(bestEntries)), bestSpread, bestCoverage,
+                evaluated, evaluated - 1));
+    }
+
+    /**
+     * Scores each window of the MMR-sorted entries by MMR spread plus the real role
+     * assignment penalty from {@code rolePenalty} instead of the role coverage estimate.
+     * Meant for short candidate lists (e.g. the windows around an anchor player), where
+     * running a role assignment per window is affordable. A negative penalty marks a window
+     * without a valid role assignment; it is rejected, and if every window is, none is returned.
+     */
+    public Optional<WindowResult> findBestWindowByRolePenalty(List<QueueEntry> sortedEntries, int windowSize,
+                                                              ToIntFunction<List<Player>> rolePenalty) {
+        int n = sortedEntries.size();
+        if (n < windowSize) {
+            return Optional.empty();
+        }
+
+        List<Player> players = new ArrayList<>(windowSize);
+        RoleCoverage coverage = new RoleCoverage();
+        int bestStart = -1;
+        int bestSpread = 0;
+        int bestCoverage = 0;
+        long bestScore = Long.MAX_VALUE;
+        int evaluated = 0;
+
+        for (int i = 0; i < n; i++) {
+            coverage.enter(sortedEntries.get(i).player());
+            int start = i - windowSize + 1;
+            if (start < 0) {
+                continue;
+            }
+            if (start > 0) {
+                coverage.leave(sortedEntries.get(start - 1).player());
+            }
+
+            players.clear();
+            for (int j = start; j <= i; j++) {
+                players.add(sortedEntries.get(j).player());
+            }
+            evaluated++;
+            int penalty = rolePenalty.applyAsInt(players);
+            if (penalty < 0) {
+                continue;
+            }
+            int mmrSpread = sortedEntries.get(i).player().mmr() - sortedEntries.get(start).player().mmr();
+            long score = (long) mmrSpread + penalty;
+
+            if (score < bestScore) {
+                bestScore = score;
+                bestStart = start;
+                bestSpread = mmrSpread;
+                bestCoverage = coverage.missingRoles();
+            }
+        }
+
+        if (bestStart < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new WindowResult(
+                new ArrayList<>(sortedEntries.subList(bestStart, bestStart + windowSize)),
+                bestSpread,
+                bestCoverage,
+                evaluated,
+                evaluated - 1
+        ));
+    }
+
+    /**
+     * Same scoring over a struct-of-arrays queue: {@code mmr} ascending, {@code packedRoles}
+     * as produced by {@link Role#pack}. Only the winning window is materialized, through
+     * {@code materializer}, which maps a slot index to its entry.
+     */
+    public Optional<WindowResult> findBestWindow(int[] mmr, byte[] packedRoles, int count, int windowSize,
+                                                 IntFunction<QueueEntry> materializer) {
+        if (count < windowSize) {
+            return Optional.empty();
+        }
+
+        RoleCoverage coverage = new RoleCoverage();
+        int bestStart = -1;
+        int bestSpread = 0;
+        int bestCoverage = 0;
         int bestScore = Integer.MAX_VALUE;
+        int evaluated = 0;
 
-        for (int i = 0; i <= sorted.size() - windowSize; i++) {
-            List<QueueEntry> window = sorted.subList(i, i + windowSize);
-            int mmrSpread = calculateMmrSpread(window);
-            int roleCoverage = calculateRoleCoverageScore(window);
-            int score = mmrSpread + roleCoverage * 10;
+        for (int i = 0; i < count; i++) {
+            coverage.enter(packedRoles[i]);
+            int start = i - windowSize + 1;
+            if (start < 0) {
+                continue;
+            }
+            if (start > 0) {
+                coverage.leave(packedRoles[start - 1]);
+            }
+
+            evaluated++;
+            int mmrSpread = mmr[i] - mmr[start];
+            int roleCoverage = coverage.missingRoles();
+            int score = mmrSpread + roleCoverage * ROLE_COVERAGE_WEIGHT;
 
             if (score < bestScore) {
                 bestScore = score;
-                bestWindow = new WindowResult(
-                        new ArrayList<>(window),
-                        mmrSpread,
-                        roleCoverage
-                );
+                bestStart = start;
+                bestSpread = mmrSpread;
+                bestCoverage = roleCoverage;
+            }
+        }
+
+        List<QueueEntry> entries = new ArrayList<>(windowSize);
+        for (int slot = bestStart; slot < bestStart + windowSize; slot++) {
+            entries.add(materializer.apply(slot));
+        }
+        return Optional.of(new WindowResult(entries, bestSpread, bestCoverage, evaluated, evaluated - 1));
+    }
+
+    /**
+     * Scores every window of the MMR-sorted entries once and picks the set of
+     * non-overlapping windows that yields the most matches, preferring the lowest
+     * total score among those. Returns them best score first, so a caller that
+     * needs fewer matches can stop early; windows left out of the packing count as rejected.
+     */
+    public DisjointWindows findDisjointWindows(List<QueueEntry> sortedEntries, int windowSize) {
+        int n = sortedEntries.size();
+        if (n < windowSize) {
+            return new DisjointWindows(Collections.emptyList(), 0, 0);
+        }
+
+        // windowScores[start] for every window position, from one sliding pass
+        int[] windowScores = new int[n - windowSize + 1];
+        RoleCoverage coverage = new RoleCoverage();
+        for (int i = 0; i < n; i++) {
+            coverage.enter(sortedEntries.get(i).player());
+            int start = i - windowSize + 1;
+            if (start < 0) {
+                continue;
+            }
+            if (start > 0) {
+                coverage.leave(sortedEntries.get(start - 1).player());
+            }
+            int mmrSpread = sortedEntries.get(i).player().mmr() - sortedEntries.get(start).player().mmr();
+            windowScores[start] = mmrSpread + coverage.missingRoles() * ROLE_COVERAGE_WEIGHT;
+        }
+
+        long[] rankedStarts = rankDisjointWindows(windowScores, n, windowSize);
+        List<WindowResult> windows = new ArrayList<>(rankedStarts.length);
+        for (long ranked : rankedStarts) {
+            int start = (int) ranked;
+            List<QueueEntry> window = new ArrayList<>(sortedEntries.subList(start, start + windowSize));
+            int mmrSpread = window.get(windowSize - 1).player().mmr() - window.get(0).player().mmr();
+            int roleCoverage = ((int) (ranked >>> 32) - mmrSpread) / ROLE_COVERAGE_WEIGHT;
+            windows.add(new WindowResult(window, mmrSpread, roleCoverage, 0, 0));
+        }
+        return new DisjointWindows(windows, windowScores.length, windowScores.length - windows.size());
+    }
+
+    /**
+     * Same packing over a struct-of-arrays queue: {@code mmr} ascending, {@code packedRoles}
+     * as produced by {@link Role#pack}. A window's entries are materialized through
+     * {@code materializer} only when the returned list is read at its index, so a caller that
+     * stops early never materializes the rest of the queue. The list is only valid for as
+     * long as the arrays and the materializer are.
+     */
+    public DisjointWindows findDisjointWindows(int[] mmr, byte[] packedRoles, int count, int windowSize,
+                                               IntFunction<QueueEntry> materializer) {
+        if (count < windowSize) {
+            return new DisjointWindows(Collections.emptyList(), 0, 0);
+        }
+
+        int[] windowScores = new int[count - windowSize + 1];
+        RoleCoverage coverage = new RoleCoverage();
+        for (int i = 0; i < count; i++) {
+            coverage.enter(packedRoles[i]);
+            int start = i - windowSize + 1;
+            if (start < 0) {
+                continue;
             }
+            if (start > 0) {
+                coverage.leave(packedRoles[start - 1]);
+            }
+            windowScores[start] = mmr[i] - mmr[start] + coverage.missingRoles() * ROLE_COVERAGE_WEIGHT;
         }
 
-        return Optional.ofNullable(bestWindow);
+        long[] rankedStarts = rankDisjointWindows(windowScores, count, windowSize);
+        List<WindowResult> windows = new AbstractList<>() {
+            @Override
+            public WindowResult get(int index) {
+                long ranked = rankedStarts[index];
+                int start = (int) ranked;
+                List<QueueEntry> window = new ArrayList<>(windowSize);
+                for (int slot = start; slot < start + windowSize; slot++) {
+                    window.add(materializer.apply(slot));
+                }
+                int mmrSpread = mmr[start + windowSize - 1] - mmr[start];
+                int roleCoverage = ((int) (ranked >>> 32) - mmrSpread) / ROLE_COVERAGE_WEIGHT;
+                return new WindowResult(window, mmrSpread, roleCoverage, 0, 0);
+            }
+
+            @Override
+            public int size() {
+                return rankedStarts.length;
+            }
+        };
+        return new DisjointWindows(windows, windowScores.length, windowScores.length - windows.size());
     }
 
-    private int calculateMmrSpread(List<QueueEntry> window) {
-        int minMmr = window.stream()
-                .mapToInt(e -> e.player().mmr())
-                .min()
-                .orElse(0);
-        int maxMmr = window.stream()
-                .mapToInt(e -> e.player().mmr())
-                .max()
-                .orElse(0);
-        return maxMmr - minMmr;
+    /**
+     * Best packing of non-overlapping windows over {@code n} entries, given the score of the
+     * window at every start. Returns the picked windows as score in the high bits and start
+     * index in the low bits, sorted, so they are ordered by score, then position.
+     */
+    private static long[] rankDisjointWindows(int[] windowScores, int n, int windowSize) {
+        // Best packing of the first i entries: most windows, then lowest total score
+        int[] windowCount = new int[n + 1];
+        long[] totalScore = new long[n + 1];
+        boolean[] endsWindow = new boolean[n + 1];
+        for (int i = windowSize; i <= n; i++) {
+            windowCount[i] = windowCount[i - 1];
+            totalScore[i] = totalScore[i - 1];
+            int takenCount = windowCount[i - windowSize] + 1;
+            long takenScore = totalScore[i - windowSize] + windowScores[i - windowSize];
+            if (takenCount > windowCount[i] || (takenCount == windowCount[i] && takenScore < totalScore[i])) {
+                windowCount[i] = takenCount;
+                totalScore[i] = takenScore;
+                endsWindow[i] = true;
+            }
+        }
+
+        long[] rankedStarts = new long[windowCount[n]];
+        int picked = 0;
+        for (int i = n; i >= windowSize; ) {
+            if (endsWindow[i]) {
+                int start = i - windowSize;
+                rankedStarts[picked++] = ((long) windowScores[start] << 32) | start;
+                i = start;
+            } else {
+                i--;
+            }
+        }
+        Arrays.sort(rankedStarts);
+        return rankedStarts;
     }
 
-    private int calculateRoleCoverageScore(List<QueueEntry> window) {
-        Map<Role, Integer> primaryCount = new EnumMap<>(Role.class);
-        Map<Role, Integer> secondaryCount = new EnumMap<>(Role.class);
+    /**
+     * Primary + secondary preference counts per role for the current window.
+     * A role is covered once two players list it; missingRoles is the total
+     * shortfall and is kept up to date on every enter/leave.
+     */
+    private static final class RoleCoverage {
+        private final int[] counts = new int[Role.values().length];
+        private int missing = counts.length * PLAYERS_PER_ROLE;
 
-        for (QueueEntry entry : window) {
-            Player player = entry.player();
-            primaryCount.merge(player.primaryRole(), 1, Integer::sum);
-            secondaryCount.merge(player.secondaryRole(), 1, Integer::sum);
+        void enter(Player player) {
+            increment(player.primaryRole().ordinal());
+            increment(player.secondaryRole().ordinal());
+        }
+
+        void enter(byte packedRoles) {
+            increment(packedRoles >>> 4 & 0xF);
+            increment(packedRoles & 0xF);
+        }
+
+        void leave(Player player) {
+            decrement(player.primaryRole().ordinal());
+            decrement(player.secondaryRole().ordinal());
+        }
+
+        void leave(byte packedRoles) {
+            decrement(packedRoles >>> 4 & 0xF);
+            decrement(packedRoles & 0xF);
+        }
+
+        int missingRoles() {
+            return missing;
+        }
+
+        private void increment(int role) {
+            if (counts[role]++ < PLAYERS_PER_ROLE) {
+                missing--;
+            }
         }
 
-        int missingRoles = 0;
-        for (Role role : Role.values()) {
-            int primary = primaryCount.getOrDefault(role, 0);
-            int secondary = secondaryCount.getOrDefault(role, 0);
-            int total = primary + secondary;
-            if (total < 2) {
-                missingRoles += (2 - total);
+        private void decrement(int role) {
+            if (--counts[role] < PLAYERS_PER_ROLE) {
+                missing++;
             }
         }
-        return missingRoles;
     }
 }
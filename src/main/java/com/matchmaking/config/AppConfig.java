@@ -1,18 +1,27 @@
 package com.matchmaking.config;
 
 import com.matchmaking.algorithm.MmrWindowFinder;
+import com.matchmaking.metrics.MatchmakingMetrics;
+import com.matchmaking.repository.DurableQueueRepository;
 import com.matchmaking.repository.InMemoryMatchRepository;
+import com.matchmaking.repository.MappedMatchLogRepository;
 import com.matchmaking.repository.MatchRepository;
 import com.matchmaking.repository.OptimizedQueueRepository;
+import com.matchmaking.repository.PackedQueueRepository;
 import com.matchmaking.repository.QueueRepository;
+import com.matchmaking.service.MatchmakingEngine;
+import com.matchmaking.service.MatchmakingService;
 import com.matchmaking.service.QueueService;
 import com.matchmaking.service.RoleAssignmentService;
 import com.matchmaking.service.TeamBalancerService;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
 import java.time.Clock;
+import java.time.Duration;
 
 @Configuration
 public class AppConfig {
@@ -23,19 +32,55 @@ public class AppConfig {
     }
 
     @Bean
+    @ConfigurationProperties(prefix = "matchmaking")
     public MatchmakingConfig matchmakingConfig() {
         return new MatchmakingConfig();
     }
 
     @Bean
     @ConditionalOnProperty(name = "matchmaking.persistence", havingValue = "memory", matchIfMissing = true)
-    public QueueRepository inMemoryQueueRepository() {
-        return new OptimizedQueueRepository();
+    public QueueRepository inMemoryQueueRepository(MatchmakingConfig config, MatchmakingMetrics metrics) {
+        if (!config.isQueueSnapshotEnabled()) {
+            return new OptimizedQueueRepository();
+        }
+        // Restores on construction; the inferred destroy method (close) writes a final snapshot
+        DurableQueueRepository repository = new DurableQueueRepository(
+                new OptimizedQueueRepository(),
+                Path.of(config.getQueueSnapshotDirectory()),
+                config.getQueueSnapshotIntervalSeconds());
+        metrics.registerSnapshotErrors(repository, durable -> durable.getStats().snapshotErrors());
+        return repository;
     }
 
     @Bean
-    public MatchRepository matchRepository() {
-        return new InMemoryMatchRepository();
+    @ConditionalOnProperty(name = "matchmaking.persistence", havingValue = "packed")
+    public QueueRepository packedQueueRepository() {
+        return new PackedQueueRepository();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "matchmaking.match-store", havingValue = "memory", matchIfMissing = true)
+    public MatchRepository matchRepository(MatchmakingConfig config, Clock clock) {
+        // A max age of 0 keeps matches until capacity eviction
+        Duration maxAge = config.getMatchStoreMaxAgeMinutes() > 0
+                ? Duration.ofMinutes(config.getMatchStoreMaxAgeMinutes())
+                : null;
+        return new InMemoryMatchRepository(config.getMatchStoreCapacity(), maxAge, clock);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "matchmaking.match-store", havingValue = "mapped")
+    public MatchRepository mappedMatchRepository(MatchmakingConfig config, Clock clock) {
+        // A segment max age of 0 rolls segments by size only
+        Duration segmentMaxAge = config.getMatchLogSegmentMaxAgeMinutes() > 0
+                ? Duration.ofMinutes(config.getMatchLogSegmentMaxAgeMinutes())
+                : null;
+        return new MappedMatchLogRepository(
+                Path.of(config.getMatchLogDirectory()),
+                config.getMatchLogSegmentSizeMb() * 1024 * 1024,
+                segmentMaxAge,
+                config.getMatchLogMaxSegments(),
+                clock);
     }
 
     @Bean
@@ -57,4 +102,25 @@ public class AppConfig {
     public MmrWindowFinder mmrWindowFinder() {
         return new MmrWindowFinder();
     }
+
+    @Bean
+    public MatchmakingService matchmakingService(QueueService queueService,
+                                                 RoleAssignmentService roleAssignmentService,
+                                                 TeamBalancerService teamBalancerService,
+                                                 MmrWindowFinder mmrWindowFinder,
+                                                 MatchRepository matchRepository,
+                                                 MatchmakingConfig config,
+                                                 Clock clock,
+                                                 MatchmakingMetrics metrics) {
+        return new MatchmakingService(queueService, roleAssignmentService, teamBalancerService,
+                mmrWindowFinder, matchRepository, config, clock, metrics);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public MatchmakingEngine matchmakingEngine(MatchmakingService matchmakingService,
+                                               QueueService queueService,
+                                               MatchmakingMetrics metrics,
+                                               MatchmakingConfig config) {
+        return new MatchmakingEngine(matchmakingService, queueService, metrics, config);
+    }
 }
@@ -1,9 +1,14 @@
 package com.matchmaking.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MatchmakingConfig {
     private int baseWindow = 100;
     private int maxWindow = 500;
     private int windowExpansionPerMin = 50;
+    private List<Integer> windowSteps = new ArrayList<>(List.of(100, 150, 200, 300));
+    private int desperationAfterSeconds = 300;
     private int secondaryPenalty = 50;
     private int autofillPenalty = 100;
     private int maxMmrDiff = 100;
@@ -11,6 +16,69 @@ public class MatchmakingConfig {
     private int maxDuoMmrGap = 500;
     private int playersPerTeam = 5;
     private int playersPerMatch = 10;
+    private boolean engineEnabled = true;
+    private long tickIntervalMs = 100;
+    private int maxMatchesPerTick = 500;
+    private int matchStoreCapacity = 100_000;
+    private long matchStoreMaxAgeMinutes = 1440;
+    private String matchLogDirectory = "data/match-log";
+    private int matchLogSegmentSizeMb = 64;
+    private long matchLogSegmentMaxAgeMinutes = 60;
+    private int matchLogMaxSegments = 64;
+    private boolean queueSnapshotEnabled = false;
+    private String queueSnapshotDirectory = "data/queue";
+    private long queueSnapshotIntervalSeconds = 30;
+    private final Redis redis = new Redis();
+
+    /**
+     * Redis persistence settings under {@code matchmaking.redis}
+     */
+    public static class Redis {
+        /**
+         * Encoding of queue entries in Redis. An unknown value fails binding at startup
+         */
+        public enum Codec {
+            JSON,
+            BINARY
+        }
+
+        private Codec codec = Codec.JSON;
+        private boolean nearCache = false;
+        private long nearCachePollIntervalMs = 20;
+        private int changeStreamMaxLength = 100_000;
+
+        public Codec getCodec() {
+            return codec;
+        }
+
+        public void setCodec(Codec codec) {
+            this.codec = codec;
+        }
+
+        public boolean isNearCache() {
+            return nearCache;
+        }
+
+        public void setNearCache(boolean nearCache) {
+            this.nearCache = nearCache;
+        }
+
+        public long getNearCachePollIntervalMs() {
+            return nearCachePollIntervalMs;
+        }
+
+        public void setNearCachePollIntervalMs(long nearCachePollIntervalMs) {
+            this.nearCachePollIntervalMs = nearCachePollIntervalMs;
+        }
+
+        public int getChangeStreamMaxLength() {
+            return changeStreamMaxLength;
+        }
+
+        public void setChangeStreamMaxLength(int changeStreamMaxLength) {
+            this.changeStreamMaxLength = changeStreamMaxLength;
+        }
+    }
 
     public int getBaseWindow() {
         return baseWindow;
@@ -36,6 +104,22 @@ public class MatchmakingConfig {
         this.windowExpansionPerMin = windowExpansionPerMin;
     }
 
+    public List<Integer> getWindowSteps() {
+        return windowSteps;
+    }
+
+    public void setWindowSteps(List<Integer> windowSteps) {
+        this.windowSteps = windowSteps;
+    }
+
+    public int getDesperationAfterSeconds() {
+        return desperationAfterSeconds;
+    }
+
+    public void setDesperationAfterSeconds(int desperationAfterSeconds) {
+        this.desperationAfterSeconds = desperationAfterSeconds;
+    }
+
     public int getSecondaryPenalty() {
         return secondaryPenalty;
     }
@@ -91,4 +175,104 @@ public class MatchmakingConfig {
     public void setPlayersPerMatch(int playersPerMatch) {
         this.playersPerMatch = playersPerMatch;
     }
+
+    public boolean isEngineEnabled() {
+        return engineEnabled;
+    }
+
+    public void setEngineEnabled(boolean engineEnabled) {
+        this.engineEnabled = engineEnabled;
+    }
+
+    public long getTickIntervalMs() {
+        return tickIntervalMs;
+    }
+
+    public void setTickIntervalMs(long tickIntervalMs) {
+        this.tickIntervalMs = tickIntervalMs;
+    }
+
+    public int getMaxMatchesPerTick() {
+        return maxMatchesPerTick;
+    }
+
+    public void setMaxMatchesPerTick(int maxMatchesPerTick) {
+        this.maxMatchesPerTick = maxMatchesPerTick;
+    }
+
+    public int getMatchStoreCapacity() {
+        return matchStoreCapacity;
+    }
+
+    public void setMatchStoreCapacity(int matchStoreCapacity) {
+        this.matchStoreCapacity = matchStoreCapacity;
+    }
+
+    public long getMatchStoreMaxAgeMinutes() {
+        return matchStoreMaxAgeMinutes;
+    }
+
+    public void setMatchStoreMaxAgeMinutes(long matchStoreMaxAgeMinutes) {
+        this.matchStoreMaxAgeMinutes = matchStoreMaxAgeMinutes;
+    }
+
+    public String getMatchLogDirectory() {
+        return matchLogDirectory;
+    }
+
+    public void setMatchLogDirectory(String matchLogDirectory) {
+        this.matchLogDirectory = matchLogDirectory;
+    }
+
+    public int getMatchLogSegmentSizeMb() {
+        return matchLogSegmentSizeMb;
+    }
+
+    public void setMatchLogSegmentSizeMb(int matchLogSegmentSizeMb) {
+        this.matchLogSegmentSizeMb = matchLogSegmentSizeMb;
+    }
+
+    public long getMatchLogSegmentMaxAgeMinutes() {
+        return matchLogSegmentMaxAgeMinutes;
+    }
+
+    public void setMatchLogSegmentMaxAgeMinutes(long matchLogSegmentMaxAgeMinutes) {
+        this.matchLogSegmentMaxAgeMinutes = matchLogSegmentMaxAgeMinutes;
+    }
+
+    public int getMatchLogMaxSegments() {
+        return matchLogMaxSegments;
+    }
+
+    public void setMatchLogMaxSegments(int matchLogMaxSegments) {
+        this.matchLogMaxSegments = matchLogMaxSegments;
+    }
+
+    public boolean isQueueSnapshotEnabled() {
+        return queueSnapshotEnabled;
+    }
+
+    public void setQueueSnapshotEnabled(boolean queueSnapshotEnabled) {
+        this.queueSnapshotEnabled = queueSnapshotEnabled;
+    }
+
+    public String getQueueSnapshotDirectory() {
+        return queueSnapshotDirectory;
+    }
+
+    public void setQueueSnapshotDirectory(String queueSnapshotDirectory) {
+        this.queueSnapshotDirectory = queueSnapshotDirectory;
+    }
+
+    public long getQueueSnapshotIntervalSeconds() {
+        return queueSnapshotIntervalSeconds;
+    }
+
+    public void setQueueSnapshotIntervalSeconds(long queueSnapshotIntervalSeconds) {
+        this.queueSnapshotIntervalSeconds = queueSnapshotIntervalSeconds;
+    }
+
+    public Redis getRedis() {
+        return redis;
+    }
 }
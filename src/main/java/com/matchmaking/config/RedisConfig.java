@@ -1,5 +1,9 @@
 package com.matchmaking.config;
 
+import com.matchmaking.repository.BinaryQueueEntryCodec;
+import com.matchmaking.repository.JsonQueueEntryCodec;
+import com.matchmaking.repository.MirroredQueueRepository;
+import com.matchmaking.repository.QueueEntryCodec;
 import com.matchmaking.repository.QueueRepository;
 import com.matchmaking.repository.RedisQueueRepository;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -25,7 +29,32 @@ public class RedisConfig {
     }
 
     @Bean
-    public QueueRepository redisQueueRepository(RedisTemplate<String, String> redisTemplate) {
-        return new RedisQueueRepository(redisTemplate);
+    public QueueEntryCodec queueEntryCodec(MatchmakingConfig config) {
+        return switch (config.getRedis().getCodec()) {
+            case JSON -> new JsonQueueEntryCodec();
+            case BINARY -> new BinaryQueueEntryCodec();
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "matchmaking.redis.near-cache", havingValue = "false", matchIfMissing = true)
+    public QueueRepository redisQueueRepository(RedisTemplate<String, String> redisTemplate,
+                                                QueueEntryCodec codec,
+                                                MatchmakingConfig config) {
+        return new RedisQueueRepository(redisTemplate, codec, config.getRedis().getChangeStreamMaxLength());
+    }
+
+    /**
+     * Local mirror of the Redis queue; reads and window searches stay in-process
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(name = "matchmaking.redis.near-cache", havingValue = "true")
+    public QueueRepository mirroredQueueRepository(RedisTemplate<String, String> redisTemplate,
+                                                   QueueEntryCodec codec,
+                                                   MatchmakingConfig config) {
+        MatchmakingConfig.Redis redis = config.getRedis();
+        RedisQueueRepository remote =
+                new RedisQueueRepository(redisTemplate, codec, redis.getChangeStreamMaxLength());
+        return new MirroredQueueRepository(remote, redis.getNearCachePollIntervalMs());
     }
 }
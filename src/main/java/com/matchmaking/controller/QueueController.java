@@ -1,5 +1,10 @@
 package com.matchmaking.controller;
 
+import com.matchmaking.dto.BatchDequeueRequest;
+import com.matchmaking.dto.BatchEnqueueRequest;
+import com.matchmaking.dto.BatchQueueResponse;
+import com.matchmaking.dto.BatchQueueResponse.PlayerResult;
+import com.matchmaking.dto.BatchQueueResponse.Status;
 import com.matchmaking.dto.EnqueueRequest;
 import com.matchmaking.dto.QueueStatusResponse;
 import com.matchmaking.dto.QueueStatsResponse;
@@ -10,15 +15,19 @@ import com.matchmaking.model.Role;
 import com.matchmaking.repository.QueueRepository;
 import com.matchmaking.service.QueueService;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/queue")
@@ -27,15 +36,18 @@ public class QueueController {
     private final QueueRepository queueRepository;
     private final MatchmakingMetrics metrics;
     private final Clock clock;
+    private final Validator validator;
 
     public QueueController(QueueService queueService,
                            QueueRepository queueRepository,
                            MatchmakingMetrics metrics,
-                           Clock clock) {
+                           Clock clock,
+                           Validator validator) {
         this.queueService = queueService;
         this.queueRepository = queueRepository;
         this.metrics = metrics;
         this.clock = clock;
+        this.validator = validator;
     }
 
     @PostMapping("/enqueue")
@@ -44,13 +56,7 @@ public class QueueController {
             return ResponseEntity.badRequest().build();
         }
 
-        Player player = Player.create(
-                request.playerId(),
-                request.displayName(),
-                request.mmr(),
-                request.primaryRole(),
-                request.secondaryRole()
-        );
+        Player player = toPlayer(request);
 
         try {
             QueueEntry entry = queueService.enqueue(player);
@@ -61,6 +67,68 @@ public class QueueController {
         }
     }
 
+    /**
+     * Enqueues a burst of players (e.g. a finished lobby requeueing) with one batched
+     * repository write. Invalid players are reported, not rejected with the whole batch.
+     */
+    @PostMapping("/enqueue/batch")
+    public ResponseEntity<BatchQueueResponse> enqueueBatch(@Valid @RequestBody BatchEnqueueRequest request) {
+        List<Player> players = new ArrayList<>();
+        for (EnqueueRequest player : request.players()) {
+            if (isValid(player)) {
+                players.add(toPlayer(player));
+            }
+        }
+
+        List<QueueEntry> enqueued = queueService.enqueueAll(players);
+        metrics.recordPlayersEnqueued(enqueued.size());
+
+        // The first valid request for a player is the one that was enqueued
+        Set<String> enqueuedIds = new HashSet<>();
+        enqueued.forEach(entry -> enqueuedIds.add(entry.getPlayerId()));
+        List<PlayerResult> results = new ArrayList<>(request.players().size());
+        for (EnqueueRequest player : request.players()) {
+            String playerId = player != null ? player.playerId() : null;
+            Status status;
+            if (!isValid(player)) {
+                status = Status.INVALID;
+            } else if (enqueuedIds.remove(playerId)) {
+                status = Status.ENQUEUED;
+            } else {
+                status = Status.ALREADY_IN_QUEUE;
+            }
+            results.add(new PlayerResult(playerId, status));
+        }
+        return ResponseEntity.ok(BatchQueueResponse.of(results, Status.ENQUEUED));
+    }
+
+    /**
+     * Dequeues a batch of players with one batched repository write. Null or blank ids are
+     * reported as invalid, like invalid players in {@link #enqueueBatch}.
+     */
+    @PostMapping("/dequeue/batch")
+    public ResponseEntity<BatchQueueResponse> dequeueBatch(@Valid @RequestBody BatchDequeueRequest request) {
+        List<String> playerIds = request.playerIds().stream()
+                .filter(QueueController::isValidPlayerId)
+                .toList();
+        Set<String> removed = new HashSet<>(queueService.removeAll(playerIds));
+        metrics.recordPlayersDequeued(removed.size());
+
+        List<PlayerResult> results = new ArrayList<>(request.playerIds().size());
+        for (String playerId : request.playerIds()) {
+            Status status;
+            if (!isValidPlayerId(playerId)) {
+                status = Status.INVALID;
+            } else if (removed.remove(playerId)) {
+                status = Status.REMOVED;
+            } else {
+                status = Status.NOT_IN_QUEUE;
+            }
+            results.add(new PlayerResult(playerId, status));
+        }
+        return ResponseEntity.ok(BatchQueueResponse.of(results, Status.REMOVED));
+    }
+
     @DeleteMapping("/dequeue/{playerId}")
     public ResponseEntity<Void> dequeue(@PathVariable String playerId) {
         boolean removed = queueService.dequeue(playerId);
@@ -136,4 +204,24 @@ public class QueueController {
                 .toList();
         return ResponseEntity.ok(players);
     }
+
+    private boolean isValid(EnqueueRequest request) {
+        return request != null
+                && request.primaryRole() != request.secondaryRole()
+                && validator.validate(request).isEmpty();
+    }
+
+    private static boolean isValidPlayerId(String playerId) {
+        return playerId != null && !playerId.isBlank();
+    }
+
+    private Player toPlayer(EnqueueRequest request) {
+        return Player.create(
+                request.playerId(),
+                request.displayName(),
+                request.mmr(),
+                request.primaryRole(),
+                request.secondaryRole()
+        );
+    }
 }
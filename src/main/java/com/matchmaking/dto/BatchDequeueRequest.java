@@ -0,0 +1,10 @@
+package com.matchmaking.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchDequeueRequest(
+        @NotEmpty @Size(max = BatchEnqueueRequest.MAX_PLAYERS) List<String> playerIds
+) {}
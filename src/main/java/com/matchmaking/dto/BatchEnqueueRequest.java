@@ -0,0 +1,15 @@
+package com.matchmaking.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Players are validated one by one, so an invalid player does not reject the batch
+ */
+public record BatchEnqueueRequest(
+        @NotEmpty @Size(max = BatchEnqueueRequest.MAX_PLAYERS) List<EnqueueRequest> players
+) {
+    public static final int MAX_PLAYERS = 1000;
+}
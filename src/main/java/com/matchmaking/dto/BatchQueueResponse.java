@@ -0,0 +1,26 @@
+package com.matchmaking.dto;
+
+import java.util.List;
+
+/**
+ * One result per requested player, in request order
+ */
+public record BatchQueueResponse(
+        int succeeded,
+        List<PlayerResult> results
+) {
+    public enum Status {
+        ENQUEUED,
+        ALREADY_IN_QUEUE,
+        INVALID,
+        REMOVED,
+        NOT_IN_QUEUE
+    }
+
+    public record PlayerResult(String playerId, Status status) {}
+
+    public static BatchQueueResponse of(List<PlayerResult> results, Status success) {
+        int succeeded = (int) results.stream().filter(r -> r.status() == success).count();
+        return new BatchQueueResponse(succeeded, results);
+    }
+}
@@ -3,15 +3,20 @@ package com.matchmaking.metrics;
 import com.matchmaking.model.AssignmentType;
 import com.matchmaking.model.Match;
 import com.matchmaking.model.PlayerAssignment;
+import com.matchmaking.model.Rank;
+import com.matchmaking.model.Role;
 import io.micrometer.core.instrument.*;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
 
 @Component
-public class MatchmakingMetrics {
+public class MatchmakingMetrics implements PipelineListener {
     private final MeterRegistry registry;
 
     // Counters
@@ -22,14 +27,25 @@ public class MatchmakingMetrics {
 
     // Gauges
     private final AtomicInteger queueSize = new AtomicInteger(0);
+    private final AtomicInteger engineBacklog = new AtomicInteger(0);
 
     // Distribution summaries
     private final DistributionSummary mmrDifference;
     private final DistributionSummary matchAvgMmr;
-    private final DistributionSummary waitTime;
+    private final DistributionSummary matchesPerTick;
+
+    // Wait-time timers indexed by [primary role][rank], registered up front
+    private final Timer[][] waitTimes = new Timer[Role.values().length][Rank.values().length];
 
     // Timers
-    private final Timer matchCreationTime;
+    private final Timer tickDuration;
+
+    // Pipeline meters, registered up front so recording never looks up or allocates a meter
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    private final Counter windowsEvaluated;
+    private final Counter windowsRejected;
+    private final Counter candidatesScanned;
+    private final Counter unbalancedWindows;
 
     // Role assignment counters
     private final Counter primaryAssignments;
@@ -61,6 +77,10 @@ public class MatchmakingMetrics {
                 .description("Current queue size")
                 .register(registry);
 
+        Gauge.builder("matchmaking.engine.backlog", engineBacklog, AtomicInteger::get)
+                .description("Players left in queue after the last engine tick")
+                .register(registry);
+
         // Distribution summaries
         this.mmrDifference = DistributionSummary.builder("matchmaking.match.mmr_difference")
                 .description("MMR difference between teams")
@@ -71,15 +91,56 @@ public class MatchmakingMetrics {
                 .description("Average MMR of matches")
                 .register(registry);
 
-        this.waitTime = DistributionSummary.builder("matchmaking.queue.wait_time_seconds")
-                .description("Player wait time in queue")
-                .publishPercentiles(0.5, 0.75, 0.9, 0.95, 0.99)
+        // Histogram buckets rather than client percentiles, so p90 can be aggregated
+        // across roles and ranks; the SLO bucket marks the 2 minute target
+        for (Role role : Role.values()) {
+            for (Rank rank : Rank.values()) {
+                waitTimes[role.ordinal()][rank.ordinal()] = Timer.builder("matchmaking.queue.wait_time")
+                        .tag("role", role.name().toLowerCase(Locale.ROOT))
+                        .tag("rank", rank.name().toLowerCase(Locale.ROOT))
+                        .description("Time from enqueue to match creation")
+                        .publishPercentileHistogram()
+                        .serviceLevelObjectives(Duration.ofMinutes(2))
+                        .minimumExpectedValue(Duration.ofMillis(100))
+                        .maximumExpectedValue(Duration.ofMinutes(30))
+                        .register(registry);
+            }
+        }
+
+        this.matchesPerTick = DistributionSummary.builder("matchmaking.engine.matches_per_tick")
+                .description("Matches created per engine tick")
+                .publishPercentiles(0.5, 0.9, 0.99)
                 .register(registry);
 
         // Timers
-        this.matchCreationTime = Timer.builder("matchmaking.match.creation_time")
-                .description("Time to create a match")
-                .publishPercentiles(0.5, 0.75, 0.9, 0.95, 0.99)
+        this.tickDuration = Timer.builder("matchmaking.engine.tick_duration")
+                .description("Time spent in one matchmaking engine tick")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(registry);
+
+        // Pipeline stages
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder("matchmaking.pipeline.stage_duration")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .description("Time spent in one matching pipeline stage")
+                    .publishPercentiles(0.5, 0.9, 0.99)
+                    .register(registry);
+        }
+
+        this.windowsEvaluated = Counter.builder("matchmaking.pipeline.windows_evaluated")
+                .description("MMR windows scored by the window search")
+                .register(registry);
+
+        this.windowsRejected = Counter.builder("matchmaking.pipeline.windows_rejected")
+                .description("MMR windows scored but not chosen by the window search")
+                .register(registry);
+
+        this.candidatesScanned = Counter.builder("matchmaking.pipeline.candidates_scanned")
+                .description("Queue entries scanned by the window search")
+                .register(registry);
+
+        this.unbalancedWindows = Counter.builder("matchmaking.pipeline.unbalanced_windows")
+                .description("Windows rejected because the balanced teams exceeded the max MMR difference")
                 .register(registry);
 
         // Role assignments
@@ -121,6 +182,11 @@ public class MatchmakingMetrics {
         queueSize.incrementAndGet();
     }
 
+    public void recordPlayersEnqueued(int count) {
+        playersEnqueued.increment(count);
+        queueSize.addAndGet(count);
+    }
+
     public void recordPlayerDequeued() {
         playersDequeued.increment();
         queueSize.decrementAndGet();
@@ -133,17 +199,64 @@ public class MatchmakingMetrics {
         }
     }
 
-    public void recordWaitTime(Instant queueStartTime, Instant matchTime) {
-        Duration duration = Duration.between(queueStartTime, matchTime);
-        waitTime.record(duration.toSeconds());
+    /**
+     * Records how long each player in the match waited, tagged by primary role and rank.
+     * Players without a known queue start time are skipped.
+     */
+    public void recordWaitTimes(Match match) {
+        match.team1().roster().values().forEach(assignment -> recordWaitTime(assignment, match.createdAt()));
+        match.team2().roster().values().forEach(assignment -> recordWaitTime(assignment, match.createdAt()));
     }
 
-    public Timer.Sample startMatchCreationTimer() {
-        return Timer.start(registry);
+    private void recordWaitTime(PlayerAssignment assignment, Instant matchTime) {
+        Instant queueStartTime = assignment.queueStartTime();
+        if (queueStartTime == null) {
+            return;
+        }
+        int roleIndex = assignment.player().primaryRole().ordinal();
+        int rankIndex = Rank.fromMmr(assignment.player().mmr()).ordinal();
+        waitTimes[roleIndex][rankIndex].record(Duration.between(queueStartTime, matchTime));
     }
 
-    public void stopMatchCreationTimer(Timer.Sample sample) {
-        sample.stop(matchCreationTime);
+    public void recordEngineTick(long durationNanos, int matchesCreated, int backlog) {
+        tickDuration.record(durationNanos, TimeUnit.NANOSECONDS);
+        matchesPerTick.record(matchesCreated);
+        engineBacklog.set(backlog);
+    }
+
+    @Override
+    public void stageCompleted(Stage stage, long durationNanos) {
+        stageTimers[stage.ordinal()].record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void windowsEvaluated(int count) {
+        windowsEvaluated.increment(count);
+    }
+
+    @Override
+    public void windowsRejected(int count) {
+        windowsRejected.increment(count);
+    }
+
+    @Override
+    public void candidatesScanned(int count) {
+        candidatesScanned.increment(count);
+    }
+
+    @Override
+    public void windowUnbalanced() {
+        unbalancedWindows.increment();
+    }
+
+    /**
+     * Exposes the failed background queue snapshots of {@code queue}, read on each scrape.
+     * Micrometer keeps only a weak reference, so {@code queue} must be the long-lived repository.
+     */
+    public <T> void registerSnapshotErrors(T queue, ToDoubleFunction<T> snapshotErrors) {
+        FunctionCounter.builder("matchmaking.queue.snapshot_errors", queue, snapshotErrors)
+                .description("Background queue snapshots that failed")
+                .register(registry);
     }
 
     public void setQueueSize(int size) {
@@ -167,6 +280,7 @@ public class MatchmakingMetrics {
         if (reason == null) return "unknown";
         if (reason.contains("Not enough players")) return "not_enough_players";
         if (reason.contains("MMR difference")) return "mmr_too_high";
+        if (reason.contains("no longer in queue")) return "claim_conflict";
         if (reason.contains("role")) return "role_assignment_failed";
         return "other";
     }
@@ -0,0 +1,41 @@
+package com.matchmaking.metrics;
+
+/**
+ * Receives timings and counts from the matching pipeline in {@code MatchmakingService}.
+ * Stages are reported once per match attempt and window counts once per window search,
+ * on the matching thread, so implementations must not block.
+ */
+public interface PipelineListener {
+
+    PipelineListener NOOP = new PipelineListener() {};
+
+    enum Stage {
+        /** Copying the queue, or the candidates around an anchor, out of the repository */
+        SNAPSHOT,
+        /** Scoring MMR windows */
+        WINDOW_SEARCH,
+        ROLE_ASSIGNMENT,
+        BALANCING,
+        /** Saving the match */
+        PERSISTENCE,
+        /** Claiming the match's players from the queue */
+        REMOVAL
+    }
+
+    default void stageCompleted(Stage stage, long durationNanos) {
+    }
+
+    default void windowsEvaluated(int count) {
+    }
+
+    /** Windows the search scored but did not return */
+    default void windowsRejected(int count) {
+    }
+
+    default void candidatesScanned(int count) {
+    }
+
+    /** A window whose balanced teams differ by more than the max MMR difference */
+    default void windowUnbalanced() {
+    }
+}
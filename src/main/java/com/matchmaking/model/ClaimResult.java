@@ -0,0 +1,28 @@
+package com.matchmaking.model;
+
+import java.util.List;
+
+/**
+ * Outcome of an all-or-nothing claim on queued players. On conflict nothing was
+ * removed and missingPlayerIds lists the players that were no longer queued.
+ */
+public record ClaimResult(
+        boolean claimed,
+        List<String> missingPlayerIds
+) {
+    public ClaimResult {
+        missingPlayerIds = List.copyOf(missingPlayerIds);
+    }
+
+    public static ClaimResult ok() {
+        return new ClaimResult(true, List.of());
+    }
+
+    public static ClaimResult conflict(List<String> missingPlayerIds) {
+        return new ClaimResult(false, missingPlayerIds);
+    }
+
+    public boolean isClaimed() {
+        return claimed;
+    }
+}
@@ -1,6 +1,8 @@
 package com.matchmaking.model;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -25,4 +27,14 @@ public record Match(
         int mmrDifference = Math.abs(team1.avgEffectiveMmr() - team2.avgEffectiveMmr());
         return new Match(id, team1, team2, avgMmr, mmrDifference, createdAt);
     }
+
+    /**
+     * Ids of all players, team 1 first
+     */
+    public List<String> playerIds() {
+        List<String> ids = new ArrayList<>(team1.size() + team2.size());
+        team1.roster().values().forEach(assignment -> ids.add(assignment.player().id()));
+        team2.roster().values().forEach(assignment -> ids.add(assignment.player().id()));
+        return ids;
+    }
 }
@@ -1,12 +1,18 @@
 package com.matchmaking.model;
 
+import java.time.Instant;
 import java.util.Objects;
 
+/**
+ * A player placed on a team. {@code queueStartTime} is when the player entered the queue,
+ * or null when unknown (e.g. matches stored before it was recorded).
+ */
 public record PlayerAssignment(
         Player player,
         Role assignedRole,
         AssignmentType assignmentType,
-        int effectiveMmr
+        int effectiveMmr,
+        Instant queueStartTime
 ) {
     public PlayerAssignment {
         Objects.requireNonNull(player, "player must not be null");
@@ -14,8 +20,16 @@ public record PlayerAssignment(
         Objects.requireNonNull(assignmentType, "assignmentType must not be null");
     }
 
+    public PlayerAssignment(Player player, Role assignedRole, AssignmentType assignmentType, int effectiveMmr) {
+        this(player, assignedRole, assignmentType, effectiveMmr, null);
+    }
+
     public static PlayerAssignment create(Player player, Role assignedRole, AssignmentType assignmentType) {
         int effectiveMmr = player.mmr() - assignmentType.getMmrPenalty();
         return new PlayerAssignment(player, assignedRole, assignmentType, effectiveMmr);
     }
+
+    public PlayerAssignment withQueueStartTime(Instant queueStartTime) {
+        return new PlayerAssignment(player, assignedRole, assignmentType, effectiveMmr, queueStartTime);
+    }
 }
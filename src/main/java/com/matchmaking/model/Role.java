@@ -5,5 +5,12 @@ public enum Role {
     JUNGLE,
     MID,
     ADC,
-    SUPPORT
+    SUPPORT;
+
+    /**
+     * Primary role ordinal in the high nibble, secondary in the low nibble
+     */
+    public static byte pack(Role primaryRole, Role secondaryRole) {
+        return (byte) (primaryRole.ordinal() << 4 | secondaryRole.ordinal());
+    }
 }
@@ -0,0 +1,84 @@
+package com.matchmaking.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Varint and length-prefixed string primitives shared by the binary codecs
+ */
+final class BinaryFormat {
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    // ZigZag keeps small negative values (e.g. effective MMR below 0) short
+    static void writeSignedVarint(ByteArrayOutputStream out, long value) {
+        writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    /**
+     * Sequential reader over bytes[position, limit). Running past the limit throws
+     * IllegalArgumentException naming the payload.
+     */
+    static final class Reader {
+        private final byte[] bytes;
+        private final int limit;
+        private final String payload;
+        private int position;
+
+        Reader(byte[] bytes, int position, int limit, String payload) {
+            this.bytes = bytes;
+            this.position = position;
+            this.limit = limit;
+            this.payload = payload;
+        }
+
+        int readByte() {
+            if (position >= limit) {
+                throw new IllegalArgumentException("Truncated " + payload + " payload");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in " + payload + " payload");
+        }
+
+        long readSignedVarint() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            int length = (int) readVarint();
+            if (length < 0 || position + length > limit) {
+                throw new IllegalArgumentException("Truncated " + payload + " payload");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+
+    private BinaryFormat() {
+    }
+}
@@ -0,0 +1,73 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.Player;
+import com.matchmaking.model.QueueEntry;
+import com.matchmaking.model.Role;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+
+/**
+ * Compact versioned binary encoding. Version 1 layout:
+ * <pre>
+ * version    1 byte
+ * player id  varint length + UTF-8
+ * name       varint length + UTF-8
+ * mmr        varint
+ * roles      1 byte (primary ordinal << 4 | secondary ordinal)
+ * start      varint epoch millis
+ * </pre>
+ * Values starting with '{' are legacy JSON and are decoded with {@link JsonQueueEntryCodec},
+ * so a Redis queue can be switched over without draining it. Queue start times are kept
+ * to millisecond precision.
+ */
+public class BinaryQueueEntryCodec implements QueueEntryCodec {
+    private static final byte VERSION = 1;
+    private static final byte JSON_OBJECT_START = '{';
+    private static final Role[] ROLES = Role.values();
+
+    private final JsonQueueEntryCodec legacyCodec = new JsonQueueEntryCodec();
+
+    @Override
+    public byte[] encode(QueueEntry entry) {
+        Player player = entry.player();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        out.write(VERSION);
+        BinaryFormat.writeString(out, player.id());
+        BinaryFormat.writeString(out, player.displayName());
+        BinaryFormat.writeVarint(out, player.mmr());
+        out.write(player.primaryRole().ordinal() << 4 | player.secondaryRole().ordinal());
+        BinaryFormat.writeVarint(out, entry.queueStartTime().toEpochMilli());
+        return out.toByteArray();
+    }
+
+    @Override
+    public QueueEntry decode(byte[] bytes) {
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Empty QueueEntry payload");
+        }
+        if (bytes[0] == JSON_OBJECT_START) {
+            return legacyCodec.decode(bytes);
+        }
+        if (bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported QueueEntry encoding version " + bytes[0]);
+        }
+
+        BinaryFormat.Reader reader = new BinaryFormat.Reader(bytes, 1, bytes.length, "QueueEntry");
+        String id = reader.readString();
+        String name = reader.readString();
+        int mmr = (int) reader.readVarint();
+        int roles = reader.readByte();
+        long startMillis = reader.readVarint();
+
+        Player player = Player.create(id, name, mmr, role(roles >>> 4 & 0xF, id), role(roles & 0xF, id));
+        return QueueEntry.create(player, Instant.ofEpochMilli(startMillis));
+    }
+
+    private static Role role(int ordinal, String playerId) {
+        if (ordinal >= ROLES.length) {
+            throw new IllegalArgumentException("Unknown role ordinal " + ordinal + " in QueueEntry of player " + playerId);
+        }
+        return ROLES[ordinal];
+    }
+}
@@ -0,0 +1,472 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.ClaimResult;
+import com.matchmaking.model.QueueEntry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * {@link OptimizedQueueRepository} that survives restarts:
+ * - Every effective add/remove/clear is appended to a write-ahead log (WAL) and flushed
+ *   to the OS before the call returns
+ * - A periodic snapshot writes the whole queue in the compact {@link BinaryQueueEntryCodec}
+ *   format and starts a new WAL generation; older files are deleted once it is durable
+ * - On construction the newest snapshot is loaded and the WALs written after it are
+ *   replayed, restoring queue start times (to millisecond precision) so wait-time
+ *   fairness survives a rolling deploy
+ * <p>
+ * Files are {@code queue-<generation>.snapshot} and {@code queue-<generation>.wal}; the
+ * snapshot of generation g holds the queue as it was when WAL g was started. WAL and
+ * snapshot records carry a CRC32, and a torn WAL tail is dropped on replay.
+ */
+public class DurableQueueRepository implements QueueRepository, AutoCloseable {
+    private static final String THREAD_NAME = "matchmaking-queue-snapshot";
+    private static final int SNAPSHOT_MAGIC = 0x51534E50; // "QSNP"
+    private static final String FILE_PREFIX = "queue-";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String WAL_SUFFIX = ".wal";
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CLEAR = 3;
+
+    public record SnapshotStats(long generation, long snapshots, long snapshotErrors, String lastSnapshotError,
+                                long walRecords) {}
+
+    private final OptimizedQueueRepository delegate;
+    private final Path directory;
+    private final BinaryQueueEntryCodec codec = new BinaryQueueEntryCodec();
+    private final ScheduledExecutorService executor;
+
+    // Writes apply to the delegate and append to the WAL under this lock, so the WAL
+    // order always matches the order in which the queue changed
+    private final Object writeLock = new Object();
+    private final Object snapshotLock = new Object();
+    private long generation;
+    private FileOutputStream walFile;
+    private DataOutputStream wal;
+
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong snapshotErrors = new AtomicLong();
+    private final AtomicLong walRecords = new AtomicLong();
+    private volatile String lastSnapshotError;
+
+    /**
+     * Restores the queue from {@code directory} and snapshots it every
+     * {@code snapshotIntervalSeconds}; 0 snapshots only on close.
+     */
+    public DurableQueueRepository(OptimizedQueueRepository delegate, Path directory, long snapshotIntervalSeconds) {
+        if (snapshotIntervalSeconds < 0) {
+            throw new IllegalArgumentException("snapshotIntervalSeconds must not be negative");
+        }
+        this.delegate = delegate;
+        this.directory = directory;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        restore();
+        // Continue in a fresh WAL; the restored files stay until the first snapshot
+        // supersedes them, which keeps the snapshot write off the startup path
+        synchronized (writeLock) {
+            generation++;
+            openWal(generation);
+        }
+        if (snapshotIntervalSeconds > 0) {
+            executor.scheduleWithFixedDelay(this::safeSnapshot, snapshotIntervalSeconds, snapshotIntervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void add(QueueEntry entry) {
+        synchronized (writeLock) {
+            delegate.add(entry);
+            appendAdd(entry);
+            flushWal();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(QueueEntry entry) {
+        synchronized (writeLock) {
+            if (!delegate.addIfAbsent(entry)) {
+                return false;
+            }
+            appendAdd(entry);
+            flushWal();
+            return true;
+        }
+    }
+
+    @Override
+    public List<String> addAllIfAbsent(Collection<QueueEntry> entries) {
+        synchronized (writeLock) {
+            List<String> added = new ArrayList<>();
+            for (QueueEntry entry : entries) {
+                if (delegate.addIfAbsent(entry)) {
+                    appendAdd(entry);
+                    added.add(entry.getPlayerId());
+                }
+            }
+            flushWal();
+            return added;
+        }
+    }
+
+    @Override
+    public boolean remove(String playerId) {
+        synchronized (writeLock) {
+            if (!delegate.remove(playerId)) {
+                return false;
+            }
+            appendRemove(playerId);
+            flushWal();
+            return true;
+        }
+    }
+
+    @Override
+    public List<String> removeAll(Collection<String> playerIds) {
+        synchronized (writeLock) {
+            List<String> removed = delegate.removeAll(playerIds);
+            removed.forEach(this::appendRemove);
+            flushWal();
+            return removed;
+        }
+    }
+
+    @Override
+    public ClaimResult claimAll(List<String> playerIds) {
+        synchronized (writeLock) {
+            ClaimResult result = delegate.claimAll(playerIds);
+            if (result.isClaimed()) {
+                playerIds.forEach(this::appendRemove);
+                flushWal();
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (writeLock) {
+            delegate.clear();
+            append(new byte[]{OP_CLEAR});
+            flushWal();
+        }
+    }
+
+    @Override
+    public Optional<QueueEntry> findById(String playerId) {
+        return delegate.findById(playerId);
+    }
+
+    @Override
+    public List<QueueEntry> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Collection<QueueEntry> findAllOrderedByMmr() {
+        return delegate.findAllOrderedByMmr();
+    }
+
+    @Override
+    public List<QueueEntry> findByMmrRange(int minMmr, int maxMmr) {
+        return delegate.findByMmrRange(minMmr, maxMmr);
+    }
+
+    @Override
+    public Optional<QueueEntry> findLongestWaiting() {
+        return delegate.findLongestWaiting();
+    }
+
+    @Override
+    public boolean contains(String playerId) {
+        return delegate.contains(playerId);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public Map<Integer, Integer> getBucketDistribution() {
+        return delegate.getBucketDistribution();
+    }
+
+    /**
+     * Writes a snapshot of the current queue, starts a new WAL generation and deletes the
+     * files the snapshot supersedes. Writers are only blocked while the queue is copied.
+     */
+    public void snapshot() {
+        synchronized (snapshotLock) {
+            long next;
+            List<QueueEntry> entries;
+            synchronized (writeLock) {
+                next = generation + 1;
+                // MMR order makes the inserts on restore mostly local in the sorted indexes
+                entries = new ArrayList<>(delegate.findAllOrderedByMmr());
+                openWal(next);
+                generation = next;
+            }
+            try {
+                writeSnapshot(next, entries);
+                deleteGenerationsBefore(next);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write queue snapshot " + next, e);
+            }
+            snapshots.incrementAndGet();
+        }
+    }
+
+    public SnapshotStats getStats() {
+        synchronized (writeLock) {
+            return new SnapshotStats(generation, snapshots.get(), snapshotErrors.get(), lastSnapshotError,
+                    walRecords.get());
+        }
+    }
+
+    /**
+     * Stops periodic snapshots and writes a final one, so the next start replays no WAL
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+        synchronized (writeLock) {
+            closeWal();
+        }
+    }
+
+    private void restore() {
+        try {
+            Files.createDirectories(directory);
+            OptionalLong snapshotGeneration = latestGeneration(SNAPSHOT_SUFFIX);
+            long base = snapshotGeneration.orElse(0);
+            if (snapshotGeneration.isPresent()) {
+                readSnapshot(fileOf(base, SNAPSHOT_SUFFIX));
+            }
+            for (long walGeneration : generations(WAL_SUFFIX)) {
+                if (walGeneration >= base) {
+                    replayWal(fileOf(walGeneration, WAL_SUFFIX));
+                }
+            }
+            generation = Math.max(base, latestGeneration(WAL_SUFFIX).orElse(0));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to restore queue from " + directory, e);
+        }
+    }
+
+    private void readSnapshot(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < 12 || buffer.getInt(0) != SNAPSHOT_MAGIC) {
+            throw new IllegalStateException("Not a queue snapshot: " + file);
+        }
+        int end = buffer.limit() - 4;
+        if (checksum(buffer.array(), 0, end) != buffer.getInt(end)) {
+            throw new IllegalStateException("Corrupt queue snapshot: " + file);
+        }
+        buffer.position(4);
+        int count = buffer.getInt();
+        List<QueueEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            entries.add(codec.decode(bytes));
+        }
+        delegate.addAllIfAbsent(entries);
+    }
+
+    // Replays records up to the first torn or corrupt one
+    private void replayWal(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()
+                    || checksum(buffer.array(), buffer.position(), length) != crc) {
+                return;
+            }
+            byte[] record = new byte[length];
+            buffer.get(record);
+            switch (record[0]) {
+                case OP_ADD -> delegate.add(codec.decode(Arrays.copyOfRange(record, 1, length)));
+                case OP_REMOVE -> delegate.remove(new String(record, 1, length - 1, StandardCharsets.UTF_8));
+                case OP_CLEAR -> delegate.clear();
+                default -> throw new IllegalStateException("Unknown queue WAL operation " + record[0] + " in " + file);
+            }
+        }
+    }
+
+    private void writeSnapshot(long snapshotGeneration, List<QueueEntry> entries) throws IOException {
+        Path target = fileOf(snapshotGeneration, SNAPSHOT_SUFFIX);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            writeChecked(out, crc, intBytes(SNAPSHOT_MAGIC));
+            writeChecked(out, crc, intBytes(entries.size()));
+            for (QueueEntry entry : entries) {
+                byte[] bytes = codec.encode(entry);
+                writeChecked(out, crc, intBytes(bytes.length));
+                writeChecked(out, crc, bytes);
+            }
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteGenerationsBefore(long keep) throws IOException {
+        for (String suffix : List.of(SNAPSHOT_SUFFIX, WAL_SUFFIX)) {
+            for (long old : generations(suffix)) {
+                if (old < keep) {
+                    Files.deleteIfExists(fileOf(old, suffix));
+                }
+            }
+        }
+    }
+
+    private void appendAdd(QueueEntry entry) {
+        byte[] encoded = codec.encode(entry);
+        byte[] record = new byte[encoded.length + 1];
+        record[0] = OP_ADD;
+        System.arraycopy(encoded, 0, record, 1, encoded.length);
+        append(record);
+    }
+
+    private void appendRemove(String playerId) {
+        byte[] id = playerId.getBytes(StandardCharsets.UTF_8);
+        byte[] record = new byte[id.length + 1];
+        record[0] = OP_REMOVE;
+        System.arraycopy(id, 0, record, 1, id.length);
+        append(record);
+    }
+
+    // Caller holds writeLock and flushes once the whole operation is appended
+    private void append(byte[] record) {
+        try {
+            wal.writeInt(record.length);
+            wal.writeInt(checksum(record, 0, record.length));
+            wal.write(record);
+            walRecords.incrementAndGet();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append to queue WAL", e);
+        }
+    }
+
+    // Hands the operation to the OS before the call returns, so it survives a process crash
+    private void flushWal() {
+        try {
+            wal.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to flush queue WAL", e);
+        }
+    }
+
+    // Caller holds writeLock
+    private void openWal(long walGeneration) {
+        closeWal();
+        try {
+            walFile = new FileOutputStream(fileOf(walGeneration, WAL_SUFFIX).toFile(), true);
+            wal = new DataOutputStream(new BufferedOutputStream(walFile));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open queue WAL " + walGeneration, e);
+        }
+    }
+
+    // Caller holds writeLock
+    private void closeWal() {
+        if (wal == null) {
+            return;
+        }
+        try {
+            wal.flush();
+            walFile.getFD().sync();
+            wal.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close queue WAL", e);
+        } finally {
+            wal = null;
+            walFile = null;
+        }
+    }
+
+    private void safeSnapshot() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            // The I/O failure is the cause; the wrapper only names the generation
+            lastSnapshotError = e.getCause() != null ? e + ": " + e.getCause() : e.toString();
+            snapshotErrors.incrementAndGet();
+        }
+    }
+
+    private OptionalLong latestGeneration(String suffix) throws IOException {
+        return generations(suffix).stream().mapToLong(Long::longValue).max();
+    }
+
+    private List<Long> generations(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(FILE_PREFIX) && name.endsWith(suffix))
+                    .map(name -> Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - suffix.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path fileOf(long fileGeneration, String suffix) {
+        return directory.resolve(FILE_PREFIX + fileGeneration + suffix);
+    }
+
+    private static void writeChecked(DataOutputStream out, CRC32 crc, byte[] bytes) throws IOException {
+        out.write(bytes);
+        crc.update(bytes);
+    }
+
+    private static byte[] intBytes(int value) {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
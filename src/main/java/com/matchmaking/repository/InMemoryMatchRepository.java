@@ -2,32 +2,184 @@ package com.matchmaking.repository;
 
 import com.matchmaking.model.Match;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Bounded in-memory match store with:
+ * - Hash index by match id
+ * - Creation-time index (createdAt, id) for recent and time-range queries without a full copy
+ * - Per-player ring of recent match ids for history and recent-opponent lookups
+ * - Eviction of the oldest matches beyond {@code capacity} and of matches older than
+ *   {@code maxAge}, checked on every save and read
+ */
 public class InMemoryMatchRepository implements MatchRepository {
-    private final Map<String, Match> matches = new ConcurrentHashMap<>();
+    public static final int DEFAULT_CAPACITY = 100_000;
+    public static final int DEFAULT_MATCHES_PER_PLAYER = 20;
+
+    private final Map<String, Match> matchesById = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<MatchTimeKey, Match> matchesByCreatedAt = new ConcurrentSkipListMap<>();
+    private final PlayerMatchIndex matchesByPlayer;
+
+    private final int capacity;
+    private final Duration maxAge;
+    private final Clock clock;
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * Capacity-bounded only; matches never expire by age
+     */
+    public InMemoryMatchRepository() {
+        this(DEFAULT_CAPACITY, null, Clock.systemUTC());
+    }
+
+    /**
+     * @param maxAge matches created longer ago than this are evicted; null disables age eviction
+     */
+    public InMemoryMatchRepository(int capacity, Duration maxAge, Clock clock) {
+        this(capacity, maxAge, clock, DEFAULT_MATCHES_PER_PLAYER);
+    }
+
+    /**
+     * @param matchesPerPlayer match ids kept per player for {@link #findRecentByPlayer}
+     */
+    public InMemoryMatchRepository(int capacity, Duration maxAge, Clock clock, int matchesPerPlayer) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.maxAge = maxAge;
+        this.clock = clock;
+        this.matchesByPlayer = new PlayerMatchIndex(matchesPerPlayer);
+    }
 
     @Override
     public void save(Match match) {
-        matches.put(match.id(), match);
+        Match previous = matchesById.put(match.id(), match);
+        if (previous != null) {
+            matchesByCreatedAt.remove(MatchTimeKey.of(previous), previous);
+            matchesByPlayer.remove(previous);
+        }
+        matchesByCreatedAt.put(MatchTimeKey.of(match), match);
+        matchesByPlayer.add(match);
+        evict();
     }
 
     @Override
     public Optional<Match> findById(String matchId) {
-        return Optional.ofNullable(matches.get(matchId));
+        evictExpired();
+        return Optional.ofNullable(matchesById.get(matchId));
     }
 
+    /**
+     * All retained matches, oldest first. Bounded by the capacity.
+     */
     @Override
     public List<Match> findAll() {
-        return new ArrayList<>(matches.values());
+        evictExpired();
+        return new ArrayList<>(matchesByCreatedAt.values());
+    }
+
+    /**
+     * Newest matches first; walks the creation-time index from its end
+     */
+    @Override
+    public List<Match> findRecent(int limit) {
+        evictExpired();
+        List<Match> recent = new ArrayList<>(Math.min(limit, capacity));
+        Iterator<Match> newestFirst = matchesByCreatedAt.descendingMap().values().iterator();
+        while (newestFirst.hasNext() && recent.size() < limit) {
+            recent.add(newestFirst.next());
+        }
+        return recent;
+    }
+
+    /**
+     * Walks the creation-time index from {@code from} and stops after {@code limit} matches
+     */
+    @Override
+    public List<Match> findByCreatedAtBetween(Instant from, Instant to, int limit) {
+        evictExpired();
+        if (!from.isBefore(to)) {
+            return List.of();
+        }
+        List<Match> range = new ArrayList<>(Math.min(limit, capacity));
+        Iterator<Match> oldestFirst = matchesByCreatedAt
+                .subMap(MatchTimeKey.lowest(from), MatchTimeKey.lowest(to)).values().iterator();
+        while (oldestFirst.hasNext() && range.size() < limit) {
+            range.add(oldestFirst.next());
+        }
+        return range;
+    }
+
+    /**
+     * O(limit) per call from the player's ring; only the last matchesPerPlayer matches
+     * of a player are available, most recently saved first
+     */
+    @Override
+    public List<Match> findRecentByPlayer(String playerId, int limit) {
+        evictExpired();
+        List<Match> matches = new ArrayList<>();
+        for (String matchId : matchesByPlayer.recentMatchIds(playerId, limit)) {
+            Match match = matchesById.get(matchId);
+            if (match != null) {
+                matches.add(match);
+            }
+        }
+        return matches;
     }
 
     @Override
     public int count() {
-        return matches.size();
+        return matchesById.size();
+    }
+
+    public long evictedCount() {
+        return evicted.get();
+    }
+
+    int indexedPlayerCount() {
+        return matchesByPlayer.playerCount();
+    }
+
+    private void evict() {
+        while (matchesById.size() > capacity) {
+            Map.Entry<MatchTimeKey, Match> oldest = matchesByCreatedAt.pollFirstEntry();
+            if (oldest == null) {
+                break;
+            }
+            remove(oldest.getValue());
+        }
+        evictExpired();
+    }
+
+    private void evictExpired() {
+        if (maxAge == null) {
+            return;
+        }
+        Instant cutoff = Instant.now(clock).minus(maxAge);
+        Map.Entry<MatchTimeKey, Match> oldest;
+        while ((oldest = matchesByCreatedAt.firstEntry()) != null && oldest.getKey().createdAt().isBefore(cutoff)) {
+            if (matchesByCreatedAt.remove(oldest.getKey(), oldest.getValue())) {
+                remove(oldest.getValue());
+            }
+        }
+    }
+
+    private void remove(Match match) {
+        if (matchesById.remove(match.id(), match)) {
+            matchesByPlayer.remove(match);
+            evicted.incrementAndGet();
+        }
     }
 }
@@ -1,24 +1,99 @@
 package com.matchmaking.repository;
 
+import com.matchmaking.model.ClaimResult;
 import com.matchmaking.model.QueueEntry;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class InMemoryQueueRepository implements QueueRepository {
     private final Map<String, QueueEntry> entries = new ConcurrentHashMap<>();
 
+    // Single-player writes share this lock; claimAll takes it exclusively
+    private final ReentrantReadWriteLock claimLock = new ReentrantReadWriteLock();
+
     @Override
     public void add(QueueEntry entry) {
-        entries.put(entry.getPlayerId(), entry);
+        claimLock.readLock().lock();
+        try {
+            entries.put(entry.getPlayerId(), entry);
+        } finally {
+            claimLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(QueueEntry entry) {
+        claimLock.readLock().lock();
+        try {
+            return entries.putIfAbsent(entry.getPlayerId(), entry) == null;
+        } finally {
+            claimLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> addAllIfAbsent(Collection<QueueEntry> batch) {
+        claimLock.readLock().lock();
+        try {
+            List<String> added = new ArrayList<>();
+            for (QueueEntry entry : batch) {
+                if (entries.putIfAbsent(entry.getPlayerId(), entry) == null) {
+                    added.add(entry.getPlayerId());
+                }
+            }
+            return added;
+        } finally {
+            claimLock.readLock().unlock();
+        }
     }
 
     @Override
     public boolean remove(String playerId) {
-        return entries.remove(playerId) != null;
+        claimLock.readLock().lock();
+        try {
+            return entries.remove(playerId) != null;
+        } finally {
+            claimLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> removeAll(Collection<String> playerIds) {
+        claimLock.readLock().lock();
+        try {
+            List<String> removed = new ArrayList<>();
+            for (String playerId : playerIds) {
+                if (entries.remove(playerId) != null) {
+                    removed.add(playerId);
+                }
+            }
+            return removed;
+        } finally {
+            claimLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ClaimResult claimAll(List<String> playerIds) {
+        claimLock.writeLock().lock();
+        try {
+            List<String> missing = playerIds.stream()
+                    .filter(playerId -> !entries.containsKey(playerId))
+                    .toList();
+            if (!missing.isEmpty()) {
+                return ClaimResult.conflict(missing);
+            }
+            playerIds.forEach(entries::remove);
+            return ClaimResult.ok();
+        } finally {
+            claimLock.writeLock().unlock();
+        }
     }
 
     @Override
@@ -43,6 +118,11 @@ public class InMemoryQueueRepository implements QueueRepository {
 
     @Override
     public void clear() {
-        entries.clear();
+        claimLock.writeLock().lock();
+        try {
+            entries.clear();
+        } finally {
+            claimLock.writeLock().unlock();
+        }
     }
 }
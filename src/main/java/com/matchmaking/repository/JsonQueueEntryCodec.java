@@ -0,0 +1,37 @@
+package com.matchmaking.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.matchmaking.model.QueueEntry;
+
+import java.io.IOException;
+
+/**
+ * Jackson JSON encoding (UTF-8), the original Redis storage format
+ */
+public class JsonQueueEntryCodec implements QueueEntryCodec {
+    private final ObjectMapper objectMapper;
+
+    public JsonQueueEntryCodec() {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+    }
+
+    @Override
+    public byte[] encode(QueueEntry entry) {
+        try {
+            return objectMapper.writeValueAsBytes(entry);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize QueueEntry", e);
+        }
+    }
+
+    @Override
+    public QueueEntry decode(byte[] bytes) {
+        try {
+            return objectMapper.readValue(bytes, QueueEntry.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to deserialize QueueEntry", e);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.Match;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable match store: an append-only, segmented, memory-mapped log on local disk.
+ * - Each segment is a preallocated file mapped read-write; a match is appended as one
+ *   record (int payload length, int CRC32, {@link MatchLogCodec} payload)
+ * - Matches are decoded from the mapping on read; the heap only holds the indexes by id,
+ *   creation time and player
+ * - On startup every segment is scanned to rebuild the indexes. A segment's scan stops at
+ *   its first empty or corrupt record, which drops a write torn by a crash. A newest
+ *   segment without a valid header was cut short while being created and is deleted
+ * - The active segment rolls over when the next record does not fit or it is older than
+ *   {@code maxSegmentAge}; segments beyond {@code maxSegments} are deleted oldest first
+ * <p>
+ * Appends land in the OS page cache and survive a process crash; segments are forced to
+ * disk on rollover and on {@link #close()}.
+ */
+public class MappedMatchLogRepository implements MatchRepository, AutoCloseable {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final Duration DEFAULT_MAX_SEGMENT_AGE = Duration.ofHours(1);
+    public static final int DEFAULT_MAX_SEGMENTS = 64;
+
+    private static final int SEGMENT_MAGIC = 0x4D4C4F47; // "MLOG"
+    private static final int SEGMENT_HEADER_SIZE = 16;   // magic, reserved, created-at millis
+    private static final int RECORD_HEADER_SIZE = 8;     // payload length, CRC32
+    private static final int MIN_SEGMENT_SIZE = 4096;
+    private static final String SEGMENT_PREFIX = "matches-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private record Location(Segment segment, int offset, int length) {}
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Duration maxSegmentAge;
+    private final int maxSegments;
+    private final Clock clock;
+
+    // Writers synchronize on this repository; readers only use the concurrent indexes
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSequence;
+
+    private final Map<String, Location> locationsById = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<MatchTimeKey, Location> locationsByCreatedAt = new ConcurrentSkipListMap<>();
+    private final PlayerMatchIndex matchesByPlayer =
+            new PlayerMatchIndex(InMemoryMatchRepository.DEFAULT_MATCHES_PER_PLAYER);
+
+    public MappedMatchLogRepository(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENT_AGE, DEFAULT_MAX_SEGMENTS, Clock.systemUTC());
+    }
+
+    /**
+     * Opens the log in {@code directory}, creating it if needed, and rebuilds the indexes
+     * from the existing segments.
+     *
+     * @param maxSegmentAge segments older than this are rolled over on the next save; null disables
+     * @param maxSegments   segments kept on disk, oldest deleted first
+     */
+    public MappedMatchLogRepository(Path directory, int segmentSize, Duration maxSegmentAge,
+                                    int maxSegments, Clock clock) {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segmentSize must be at least " + MIN_SEGMENT_SIZE + " bytes");
+        }
+        if (maxSegments <= 0) {
+            throw new IllegalArgumentException("maxSegments must be positive");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegmentAge = maxSegmentAge;
+        this.maxSegments = maxSegments;
+        this.clock = clock;
+        recover();
+    }
+
+    /**
+     * Appends the match to the active segment. Saving an id again supersedes the earlier record.
+     */
+    @Override
+    public synchronized void save(Match match) {
+        byte[] payload = MatchLogCodec.encode(match);
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize - SEGMENT_HEADER_SIZE) {
+            throw new IllegalArgumentException("Match " + match.id() + " does not fit in a log segment");
+        }
+        Segment segment = activeSegment(recordSize);
+        int offset = segment.append(payload);
+        index(match, new Location(segment, offset, payload.length));
+    }
+
+    @Override
+    public Optional<Match> findById(String matchId) {
+        Location location = locationsById.get(matchId);
+        return location != null ? Optional.of(read(location)) : Optional.empty();
+    }
+
+    /**
+     * Every retained match, oldest first, decoded from the log
+     */
+    @Override
+    public List<Match> findAll() {
+        return readAll(locationsByCreatedAt.values());
+    }
+
+    @Override
+    public List<Match> findRecent(int limit) {
+        List<Match> recent = new ArrayList<>();
+        Iterator<Location> newestFirst = locationsByCreatedAt.descendingMap().values().iterator();
+        while (newestFirst.hasNext() && recent.size() < limit) {
+            recent.add(read(newestFirst.next()));
+        }
+        return recent;
+    }
+
+    /**
+     * Decodes only the first {@code limit} matches of the range
+     */
+    @Override
+    public List<Match> findByCreatedAtBetween(Instant from, Instant to, int limit) {
+        if (!from.isBefore(to)) {
+            return List.of();
+        }
+        List<Match> range = new ArrayList<>();
+        Iterator<Location> oldestFirst = locationsByCreatedAt
+                .subMap(MatchTimeKey.lowest(from), MatchTimeKey.lowest(to)).values().iterator();
+        while (oldestFirst.hasNext() && range.size() < limit) {
+            range.add(read(oldestFirst.next()));
+        }
+        return range;
+    }
+
+    @Override
+    public List<Match> findRecentByPlayer(String playerId, int limit) {
+        List<Match> matches = new ArrayList<>();
+        for (String matchId : matchesByPlayer.recentMatchIds(playerId, limit)) {
+            Location location = locationsById.get(matchId);
+            if (location != null) {
+                matches.add(read(location));
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public int count() {
+        return locationsById.size();
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Forces every segment to disk and releases the files
+     */
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private void recover() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(directory)) {
+                files = listing.filter(MappedMatchLogRepository::isSegmentFile)
+                        .sorted()
+                        .toList();
+            }
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                if (i == files.size() - 1 && !Segment.hasHeader(file)) {
+                    // Crashed before the header was written, so no record was appended either
+                    Files.delete(file);
+                    nextSequence = sequenceOf(file) + 1;
+                    break;
+                }
+                Segment segment = Segment.open(file, sequenceOf(file));
+                scan(segment, this::index);
+                segments.addLast(segment);
+                nextSequence = segment.sequence + 1;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open match log in " + directory, e);
+        }
+        enforceRetention();
+    }
+
+    private Segment activeSegment(int recordSize) {
+        Segment active = segments.peekLast();
+        if (active != null && active.remaining() >= recordSize && !isExpired(active)) {
+            return active;
+        }
+        if (active != null) {
+            active.force();
+        }
+        try {
+            Segment rolled = Segment.create(directory.resolve(segmentFileName(nextSequence)), nextSequence,
+                    segmentSize, Instant.now(clock));
+            nextSequence++;
+            segments.addLast(rolled);
+            enforceRetention();
+            return rolled;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create match log segment in " + directory, e);
+        }
+    }
+
+    // An empty segment is never rolled for age, so idle periods do not leave empty files behind
+    private boolean isExpired(Segment segment) {
+        return maxSegmentAge != null
+                && !segment.isEmpty()
+                && !segment.createdAt.plus(maxSegmentAge).isAfter(Instant.now(clock));
+    }
+
+    private void enforceRetention() {
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.pollFirst();
+            scan(oldest, this::unindex);
+            oldest.close();
+            try {
+                Files.deleteIfExists(oldest.path);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to delete match log segment " + oldest.path, e);
+            }
+        }
+    }
+
+    private interface RecordVisitor {
+        void visit(Match match, Location location);
+    }
+
+    /**
+     * Visits the valid records of a segment in order and moves its write position past them
+     */
+    private static void scan(Segment segment, RecordVisitor visitor) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = SEGMENT_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            byte[] payload = segment.read(position + RECORD_HEADER_SIZE, length);
+            if (checksum(payload) != buffer.getInt(position + 4)) {
+                break;
+            }
+            visitor.visit(MatchLogCodec.decode(payload, 0, length),
+                    new Location(segment, position + RECORD_HEADER_SIZE, length));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        segment.writePosition = position;
+    }
+
+    private void index(Match match, Location location) {
+        Location previous = locationsById.put(match.id(), location);
+        if (previous != null) {
+            Match superseded = read(previous);
+            locationsByCreatedAt.remove(MatchTimeKey.of(superseded), previous);
+            matchesByPlayer.remove(superseded);
+        }
+        locationsByCreatedAt.put(MatchTimeKey.of(match), location);
+        matchesByPlayer.add(match);
+    }
+
+    // Only drops index entries that still point into the deleted segment
+    private void unindex(Match match, Location location) {
+        if (locationsById.remove(match.id(), location)) {
+            locationsByCreatedAt.remove(MatchTimeKey.of(match), location);
+            matchesByPlayer.remove(match);
+        }
+    }
+
+    private Match read(Location location) {
+        return MatchLogCodec.decode(location.segment().read(location.offset(), location.length()), 0,
+                location.length());
+    }
+
+    private List<Match> readAll(Iterable<Location> locations) {
+        List<Match> matches = new ArrayList<>();
+        for (Location location : locations) {
+            matches.add(read(location));
+        }
+        return matches;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Zero-padded, so lexical order is sequence order
+    private static String segmentFileName(long sequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    private static final class Segment {
+        final long sequence;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final Instant createdAt;
+        int writePosition;
+
+        private Segment(long sequence, Path path, FileChannel channel, MappedByteBuffer buffer, Instant createdAt) {
+            this.sequence = sequence;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.createdAt = createdAt;
+            this.writePosition = SEGMENT_HEADER_SIZE;
+        }
+
+        static Segment create(Path path, long sequence, int size, Instant createdAt) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, SEGMENT_MAGIC);
+            buffer.putLong(8, createdAt.toEpochMilli());
+            buffer.force(0, SEGMENT_HEADER_SIZE);
+            return new Segment(sequence, path, channel, buffer, createdAt);
+        }
+
+        static boolean hasHeader(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+                return channel.read(header, 0) == SEGMENT_HEADER_SIZE && header.getInt(0) == SEGMENT_MAGIC;
+            }
+        }
+
+        static Segment open(Path path, long sequence) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buffer.capacity() < SEGMENT_HEADER_SIZE || buffer.getInt(0) != SEGMENT_MAGIC) {
+                channel.close();
+                throw new IllegalStateException("Not a match log segment: " + path);
+            }
+            return new Segment(sequence, path, channel, buffer, Instant.ofEpochMilli(buffer.getLong(8)));
+        }
+
+        /**
+         * Writes payload and checksum before the length, so a scan never sees a length
+         * without its payload. Returns the payload offset.
+         */
+        int append(byte[] payload) {
+            int position = writePosition;
+            buffer.put(position + RECORD_HEADER_SIZE, payload);
+            buffer.putInt(position + 4, checksum(payload));
+            buffer.putInt(position, payload.length);
+            writePosition = position + RECORD_HEADER_SIZE + payload.length;
+            return position + RECORD_HEADER_SIZE;
+        }
+
+        byte[] read(int offset, int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return bytes;
+        }
+
+        int remaining() {
+            return buffer.capacity() - writePosition;
+        }
+
+        boolean isEmpty() {
+            return writePosition == SEGMENT_HEADER_SIZE;
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to close match log segment " + path, e);
+            }
+        }
+    }
+}
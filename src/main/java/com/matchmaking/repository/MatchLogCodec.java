@@ -0,0 +1,114 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.AssignmentType;
+import com.matchmaking.model.Match;
+import com.matchmaking.model.Player;
+import com.matchmaking.model.PlayerAssignment;
+import com.matchmaking.model.Role;
+import com.matchmaking.model.Team;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Binary match encoding for {@link MappedMatchLogRepository}. Version 2 layout:
+ * <pre>
+ * version          1 byte
+ * match id         varint length + UTF-8
+ * created at       varint epoch seconds, varint nanos
+ * avg mmr, diff    varint, varint
+ * team 1, team 2   avg mmr varint, avg effective mmr zigzag varint, player count 1 byte,
+ *                  then per player: id, name (varint length + UTF-8), mmr varint,
+ *                  roles byte (primary << 4 | secondary), assignment byte
+ *                  (assigned role << 4 | assignment type), effective mmr zigzag varint,
+ *                  queue start flag 1 byte, then if set varint epoch seconds, varint nanos
+ * </pre>
+ * Version 1 is the same without the queue start fields and is still decoded.
+ */
+final class MatchLogCodec {
+    private static final byte VERSION = 2;
+    private static final byte VERSION_WITHOUT_QUEUE_START = 1;
+    private static final Role[] ROLES = Role.values();
+    private static final AssignmentType[] ASSIGNMENT_TYPES = AssignmentType.values();
+
+    static byte[] encode(Match match) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        out.write(VERSION);
+        BinaryFormat.writeString(out, match.id());
+        BinaryFormat.writeVarint(out, match.createdAt().getEpochSecond());
+        BinaryFormat.writeVarint(out, match.createdAt().getNano());
+        BinaryFormat.writeVarint(out, match.avgMmr());
+        BinaryFormat.writeVarint(out, match.mmrDifference());
+        writeTeam(out, match.team1());
+        writeTeam(out, match.team2());
+        return out.toByteArray();
+    }
+
+    static Match decode(byte[] bytes, int offset, int length) {
+        BinaryFormat.Reader reader = new BinaryFormat.Reader(bytes, offset, offset + length, "Match");
+        int version = reader.readByte();
+        if (version != VERSION && version != VERSION_WITHOUT_QUEUE_START) {
+            throw new IllegalArgumentException("Unsupported Match encoding version " + version);
+        }
+        boolean hasQueueStart = version == VERSION;
+        String id = reader.readString();
+        Instant createdAt = Instant.ofEpochSecond(reader.readVarint(), reader.readVarint());
+        int avgMmr = (int) reader.readVarint();
+        int mmrDifference = (int) reader.readVarint();
+        Team team1 = readTeam(reader, hasQueueStart);
+        Team team2 = readTeam(reader, hasQueueStart);
+        return new Match(id, team1, team2, avgMmr, mmrDifference, createdAt);
+    }
+
+    private static void writeTeam(ByteArrayOutputStream out, Team team) {
+        BinaryFormat.writeVarint(out, team.avgMmr());
+        BinaryFormat.writeSignedVarint(out, team.avgEffectiveMmr());
+        out.write(team.size());
+        for (PlayerAssignment assignment : team.roster().values()) {
+            Player player = assignment.player();
+            BinaryFormat.writeString(out, player.id());
+            BinaryFormat.writeString(out, player.displayName());
+            BinaryFormat.writeVarint(out, player.mmr());
+            out.write(player.primaryRole().ordinal() << 4 | player.secondaryRole().ordinal());
+            out.write(assignment.assignedRole().ordinal() << 4 | assignment.assignmentType().ordinal());
+            BinaryFormat.writeSignedVarint(out, assignment.effectiveMmr());
+            Instant queueStartTime = assignment.queueStartTime();
+            if (queueStartTime == null) {
+                out.write(0);
+            } else {
+                out.write(1);
+                BinaryFormat.writeVarint(out, queueStartTime.getEpochSecond());
+                BinaryFormat.writeVarint(out, queueStartTime.getNano());
+            }
+        }
+    }
+
+    private static Team readTeam(BinaryFormat.Reader reader, boolean hasQueueStart) {
+        int avgMmr = (int) reader.readVarint();
+        int avgEffectiveMmr = (int) reader.readSignedVarint();
+        int size = reader.readByte();
+        Map<Role, PlayerAssignment> roster = new EnumMap<>(Role.class);
+        for (int i = 0; i < size; i++) {
+            String id = reader.readString();
+            String name = reader.readString();
+            int mmr = (int) reader.readVarint();
+            int roles = reader.readByte();
+            int assignment = reader.readByte();
+            int effectiveMmr = (int) reader.readSignedVarint();
+            Instant queueStartTime = hasQueueStart && reader.readByte() != 0
+                    ? Instant.ofEpochSecond(reader.readVarint(), reader.readVarint())
+                    : null;
+
+            Player player = Player.create(id, name, mmr, ROLES[roles >>> 4 & 0xF], ROLES[roles & 0xF]);
+            Role assignedRole = ROLES[assignment >>> 4 & 0xF];
+            roster.put(assignedRole, new PlayerAssignment(player, assignedRole,
+                    ASSIGNMENT_TYPES[assignment & 0xF], effectiveMmr, queueStartTime));
+        }
+        return new Team(roster, avgMmr, avgEffectiveMmr);
+    }
+
+    private MatchLogCodec() {
+    }
+}
@@ -2,6 +2,8 @@ package com.matchmaking.repository;
 
 import com.matchmaking.model.Match;
 
+import java.time.Instant;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,5 +14,27 @@ public interface MatchRepository {
 
     List<Match> findAll();
 
+    /**
+     * Up to {@code limit} most recently created matches, newest first
+     */
+    List<Match> findRecent(int limit);
+
+    /**
+     * Up to {@code limit} matches created in [from, to), oldest first
+     */
+    List<Match> findByCreatedAtBetween(Instant from, Instant to, int limit);
+
+    /**
+     * Up to {@code limit} most recent matches the player took part in, newest first.
+     * The default scans every match; stores with a per-player index override it.
+     */
+    default List<Match> findRecentByPlayer(String playerId, int limit) {
+        return findAll().stream()
+                .filter(match -> match.playerIds().contains(playerId))
+                .sorted(Comparator.comparing(Match::createdAt).reversed())
+                .limit(limit)
+                .toList();
+    }
+
     int count();
 }
@@ -0,0 +1,30 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.Match;
+
+import java.time.Instant;
+import java.util.Comparator;
+
+/**
+ * Creation-time index key; the match id breaks ties between matches created at the same instant
+ */
+record MatchTimeKey(Instant createdAt, String matchId) implements Comparable<MatchTimeKey> {
+    private static final Comparator<MatchTimeKey> ORDER =
+            Comparator.comparing(MatchTimeKey::createdAt).thenComparing(MatchTimeKey::matchId);
+
+    static MatchTimeKey of(Match match) {
+        return new MatchTimeKey(match.createdAt(), match.id());
+    }
+
+    /**
+     * Sorts before every key at the given instant
+     */
+    static MatchTimeKey lowest(Instant createdAt) {
+        return new MatchTimeKey(createdAt, "");
+    }
+
+    @Override
+    public int compareTo(MatchTimeKey other) {
+        return ORDER.compare(this, other);
+    }
+}
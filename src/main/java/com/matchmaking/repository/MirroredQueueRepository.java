@@ -0,0 +1,299 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.ClaimResult;
+import com.matchmaking.model.QueueEntry;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Near-cache over a {@link RedisQueueRepository}:
+ * - Reads and window searches run against a local {@link OptimizedQueueRepository}
+ * - Writes and claims go to Redis, so Redis stays the single source of truth, and
+ *   are then applied locally right away, unless the tailer has already read past the
+ *   write's change event (it may have applied a newer change of the same player)
+ * - A tailer thread polls the Redis change stream and applies every add/remove,
+ *   including those made by other nodes. If it falls so far behind that the capped
+ *   stream was trimmed past its position, it resyncs from a snapshot
+ * <p>
+ * The mirror is eventually consistent. A stale local read can only make a matcher pick
+ * a player who is already gone, which the Redis claim rejects as a conflict.
+ */
+public class MirroredQueueRepository implements QueueRepository {
+    private static final String THREAD_NAME = "matchmaking-queue-mirror";
+    private static final int READ_BATCH_SIZE = 500;
+
+    public record MirrorStats(boolean running, String lastChangeId, long changesApplied, long resyncs,
+                              long streamGaps, long syncErrors, String lastSyncError) {}
+
+    private final RedisQueueRepository remote;
+    private final long pollIntervalMs;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicLong changesApplied = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final AtomicLong streamGaps = new AtomicLong();
+    private final AtomicLong syncErrors = new AtomicLong();
+    // Orders local writes against the tailer's apply-and-advance and the resync swap
+    private final Object applyLock = new Object();
+    private volatile OptimizedQueueRepository local = new OptimizedQueueRepository();
+    private volatile String lastChangeId;
+    private volatile String lastSyncError;
+    private volatile boolean running;
+
+    public MirroredQueueRepository(RedisQueueRepository remote, long pollIntervalMs) {
+        if (pollIntervalMs <= 0) {
+            throw new IllegalArgumentException("pollIntervalMs must be positive");
+        }
+        this.remote = remote;
+        this.pollIntervalMs = pollIntervalMs;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the current queue and starts tailing the change stream
+     */
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        safeResync();
+        executor.scheduleWithFixedDelay(this::safePoll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Rebuilds the local copy from a Redis snapshot. The stream position is read before
+     * the snapshot, so events that race with it are replayed afterwards; replay is
+     * idempotent (add replaces, remove of an absent player is a no-op).
+     */
+    void resync() {
+        String position = remote.latestChangeId();
+        OptimizedQueueRepository fresh = new OptimizedQueueRepository();
+        for (QueueEntry entry : remote.findAll()) {
+            fresh.add(entry);
+        }
+        synchronized (applyLock) {
+            local = fresh;
+            lastChangeId = position;
+        }
+        resyncs.incrementAndGet();
+    }
+
+    /**
+     * Applies all change stream events after the last applied one and returns how many
+     * were applied. If the capped stream was trimmed past the last applied event, the
+     * missed events cannot be replayed and the mirror is rebuilt from a snapshot instead.
+     * Only the tailer thread calls this outside of tests.
+     */
+    int poll() {
+        int applied = 0;
+        List<RedisQueueRepository.Change> changes;
+        do {
+            String position = lastChangeId;
+            changes = remote.readChanges(position, READ_BATCH_SIZE);
+            // Checked after the read, so a trim racing it is caught as well
+            if (remote.changesTrimmedAfter(position)) {
+                streamGaps.incrementAndGet();
+                resync();
+                break;
+            }
+            synchronized (applyLock) {
+                for (RedisQueueRepository.Change change : changes) {
+                    apply(change);
+                    lastChangeId = change.id();
+                }
+            }
+            applied += changes.size();
+        } while (changes.size() == READ_BATCH_SIZE);
+        changesApplied.addAndGet(applied);
+        return applied;
+    }
+
+    public MirrorStats getStats() {
+        return new MirrorStats(running, lastChangeId, changesApplied.get(), resyncs.get(), streamGaps.get(),
+                syncErrors.get(), lastSyncError);
+    }
+
+    @Override
+    public void add(QueueEntry entry) {
+        String changeId = remote.addPublished(entry);
+        applyLocally(changeId, () -> local.add(entry));
+    }
+
+    @Override
+    public boolean addIfAbsent(QueueEntry entry) {
+        RedisQueueRepository.Published<Boolean> added = remote.addIfAbsentPublished(entry);
+        if (!added.result()) {
+            return false;
+        }
+        applyLocally(added.changeId(), () -> local.add(entry));
+        return true;
+    }
+
+    @Override
+    public List<String> addAllIfAbsent(Collection<QueueEntry> entries) {
+        RedisQueueRepository.Published<List<String>> added = remote.addAllIfAbsentPublished(entries);
+        applyLocally(added.changeId(), () -> {
+            Set<String> pending = new HashSet<>(added.result());
+            for (QueueEntry entry : entries) {
+                if (pending.remove(entry.getPlayerId())) {
+                    local.add(entry);
+                }
+            }
+        });
+        return added.result();
+    }
+
+    @Override
+    public boolean remove(String playerId) {
+        return !removeAll(List.of(playerId)).isEmpty();
+    }
+
+    @Override
+    public List<String> removeAll(Collection<String> playerIds) {
+        RedisQueueRepository.Published<List<String>> removed = remote.removeAllPublished(playerIds);
+        applyLocally(removed.changeId(), () -> local.removeAll(playerIds));
+        return removed.result();
+    }
+
+    /**
+     * Claims in Redis. On a conflict the missing players are dropped locally too, since
+     * Redis just reported them gone and the stream event may not have arrived yet.
+     */
+    @Override
+    public ClaimResult claimAll(List<String> playerIds) {
+        RedisQueueRepository.Published<ClaimResult> claimed = remote.claimAllPublished(playerIds);
+        ClaimResult result = claimed.result();
+        applyLocally(claimed.changeId(),
+                () -> local.removeAll(result.isClaimed() ? playerIds : result.missingPlayerIds()));
+        return result;
+    }
+
+    @Override
+    public Optional<QueueEntry> findById(String playerId) {
+        return local.findById(playerId);
+    }
+
+    @Override
+    public List<QueueEntry> findAll() {
+        return local.findAll();
+    }
+
+    @Override
+    public Collection<QueueEntry> findAllOrderedByMmr() {
+        return local.findAllOrderedByMmr();
+    }
+
+    @Override
+    public List<QueueEntry> findByMmrRange(int minMmr, int maxMmr) {
+        return local.findByMmrRange(minMmr, maxMmr);
+    }
+
+    @Override
+    public Optional<QueueEntry> findLongestWaiting() {
+        return local.findLongestWaiting();
+    }
+
+    @Override
+    public boolean contains(String playerId) {
+        return local.contains(playerId);
+    }
+
+    @Override
+    public int size() {
+        return local.size();
+    }
+
+    @Override
+    public void clear() {
+        String changeId = remote.clearPublished();
+        applyLocally(changeId, () -> local.clear());
+    }
+
+    @Override
+    public Map<Integer, Integer> getBucketDistribution() {
+        return local.getBucketDistribution();
+    }
+
+    /**
+     * Applies a write that Redis accepted as of stream position {@code changeId}. If the
+     * tailer has already applied that position, the write is in the local copy and a later
+     * change of the same player may be too, so applying it again could revive a player
+     * another node has since removed. Without a position (publishing disabled, or no
+     * stream position yet) the write is applied as is.
+     */
+    private void applyLocally(String changeId, Runnable write) {
+        synchronized (applyLock) {
+            String applied = lastChangeId;
+            if (changeId.isEmpty() || applied == null
+                    || RedisQueueRepository.compareChangeIds(changeId, applied) > 0) {
+                write.run();
+            }
+        }
+    }
+
+    private void apply(RedisQueueRepository.Change change) {
+        switch (change.type()) {
+            case ADD -> local.add(change.entry());
+            case REMOVE -> local.remove(change.playerId());
+            case CLEAR -> local.clear();
+        }
+    }
+
+    // After a failed poll the next one rebuilds from a fresh snapshot instead of
+    // guessing which events were missed
+    private void safePoll() {
+        if (lastChangeId == null && !safeResync()) {
+            return;
+        }
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            lastChangeId = null;
+            recordSyncError(e);
+        }
+    }
+
+    private boolean safeResync() {
+        try {
+            resync();
+            return true;
+        } catch (RuntimeException e) {
+            lastChangeId = null;
+            recordSyncError(e);
+            return false;
+        }
+    }
+
+    // Message first, so a reader that sees the new count also sees its error
+    private void recordSyncError(RuntimeException e) {
+        lastSyncError = e.toString();
+        syncErrors.incrementAndGet();
+    }
+}
@@ -1,16 +1,19 @@
 package com.matchmaking.repository;
 
+import com.matchmaking.model.ClaimResult;
 import com.matchmaking.model.QueueEntry;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Optimized queue repository with:
  * - MMR buckets for O(1) lookup by MMR range
- * - Priority queue ordered by wait time
- * - Thread-safe operations
+ * - Sorted MMR index for ordered scans without re-sorting
+ * - Wait-time index keyed by (queue start time, player id) with O(log n) removal
+ * - Thread-safe operations; multi-player claims are atomic against single writes
  */
 public class OptimizedQueueRepository implements QueueRepository {
     private static final int BUCKET_SIZE = 100; // Each bucket covers 100 MMR
@@ -21,31 +24,148 @@ public class OptimizedQueueRepository implements QueueRepository {
     // MMR buckets: bucketIndex -> Set of playerIds
     private final Map<Integer, Set<String>> mmrBuckets = new ConcurrentHashMap<>();
 
-    // Priority queue ordered by queue start time (longest wait first)
-    private final PriorityBlockingQueue<QueueEntry> waitTimeQueue =
-            new PriorityBlockingQueue<>(100, Comparator.comparing(QueueEntry::queueStartTime));
+    // MMR index: entries ordered by MMR, ties broken by queue time and player id
+    private final NavigableSet<QueueEntry> mmrIndex = new ConcurrentSkipListSet<>(
+            Comparator.<QueueEntry>comparingInt(e -> e.player().mmr())
+                    .thenComparing(QueueEntry::queueStartTime)
+                    .thenComparing(QueueEntry::getPlayerId));
+    private final NavigableSet<QueueEntry> mmrIndexView = Collections.unmodifiableNavigableSet(mmrIndex);
+
+    // Wait-time index ordered by queue start time (longest wait first)
+    private final NavigableSet<QueueEntry> waitTimeIndex = new ConcurrentSkipListSet<>(
+            Comparator.comparing(QueueEntry::queueStartTime)
+                    .thenComparing(QueueEntry::getPlayerId));
+
+    // Single-player writes share this lock; claimAll takes it exclusively. Reads never lock.
+    private final ReentrantReadWriteLock claimLock = new ReentrantReadWriteLock();
 
     @Override
     public void add(QueueEntry entry) {
-        String playerId = entry.getPlayerId();
+        claimLock.readLock().lock();
+        try {
+            addEntry(entry);
+        } finally {
+            claimLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(QueueEntry entry) {
+        claimLock.readLock().lock();
+        try {
+            return addEntryIfAbsent(entry);
+        } finally {
+            claimLock.readLock().unlock();
+        }
+    }
 
-        // Add to primary storage
-        entriesById.put(playerId, entry);
+    @Override
+    public List<String> addAllIfAbsent(Collection<QueueEntry> entries) {
+        claimLock.readLock().lock();
+        try {
+            List<String> added = new ArrayList<>();
+            for (QueueEntry entry : entries) {
+                if (addEntryIfAbsent(entry)) {
+                    added.add(entry.getPlayerId());
+                }
+            }
+            return added;
+        } finally {
+            claimLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String playerId) {
+        claimLock.readLock().lock();
+        try {
+            return removeEntry(playerId);
+        } finally {
+            claimLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> removeAll(Collection<String> playerIds) {
+        claimLock.readLock().lock();
+        try {
+            List<String> removed = new ArrayList<>();
+            for (String playerId : playerIds) {
+                if (removeEntry(playerId)) {
+                    removed.add(playerId);
+                }
+            }
+            return removed;
+        } finally {
+            claimLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ClaimResult claimAll(List<String> playerIds) {
+        claimLock.writeLock().lock();
+        try {
+            List<String> missing = playerIds.stream()
+                    .filter(playerId -> !entriesById.containsKey(playerId))
+                    .toList();
+            if (!missing.isEmpty()) {
+                return ClaimResult.conflict(missing);
+            }
+            playerIds.forEach(this::removeEntry);
+            return ClaimResult.ok();
+        } finally {
+            claimLock.writeLock().unlock();
+        }
+    }
+
+    // Index updates run inside the map's per-key compute, so concurrent writes for one
+    // player cannot interleave and leave stale index entries behind
+    private void addEntry(QueueEntry entry) {
+        entriesById.compute(entry.getPlayerId(), (playerId, previous) -> {
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(entry);
+            return entry;
+        });
+    }
+
+    private boolean addEntryIfAbsent(QueueEntry entry) {
+        boolean[] added = new boolean[1];
+        entriesById.computeIfAbsent(entry.getPlayerId(), playerId -> {
+            index(entry);
+            added[0] = true;
+            return entry;
+        });
+        return added[0];
+    }
+
+    private boolean removeEntry(String playerId) {
+        boolean[] removed = new boolean[1];
+        entriesById.computeIfPresent(playerId, (id, entry) -> {
+            unindex(entry);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    private void index(QueueEntry entry) {
+        String playerId = entry.getPlayerId();
 
         // Add to MMR bucket
         int bucket = getBucketIndex(entry.player().mmr());
         mmrBuckets.computeIfAbsent(bucket, k -> ConcurrentHashMap.newKeySet()).add(playerId);
 
-        // Add to priority queue
-        waitTimeQueue.add(entry);
+        // Add to MMR index
+        mmrIndex.add(entry);
+
+        // Add to wait-time index
+        waitTimeIndex.add(entry);
     }
 
-    @Override
-    public boolean remove(String playerId) {
-        QueueEntry entry = entriesById.remove(playerId);
-        if (entry == null) {
-            return false;
-        }
+    private void unindex(QueueEntry entry) {
+        String playerId = entry.getPlayerId();
 
         // Remove from MMR bucket
         int bucket = getBucketIndex(entry.player().mmr());
@@ -54,10 +174,11 @@ public class OptimizedQueueRepository implements QueueRepository {
             bucketSet.remove(playerId);
         }
 
-        // Remove from priority queue
-        waitTimeQueue.remove(entry);
+        // Remove from MMR index
+        mmrIndex.remove(entry);
 
-        return true;
+        // Remove from wait-time index
+        waitTimeIndex.remove(entry);
     }
 
     @Override
@@ -70,6 +191,14 @@ public class OptimizedQueueRepository implements QueueRepository {
         return new ArrayList<>(entriesById.values());
     }
 
+    /**
+     * Live read-only view of the MMR index; iteration is weakly consistent
+     */
+    @Override
+    public NavigableSet<QueueEntry> findAllOrderedByMmr() {
+        return mmrIndexView;
+    }
+
     @Override
     public boolean contains(String playerId) {
         return entriesById.containsKey(playerId);
@@ -82,14 +211,21 @@ public class OptimizedQueueRepository implements QueueRepository {
 
     @Override
     public void clear() {
-        entriesById.clear();
-        mmrBuckets.clear();
-        waitTimeQueue.clear();
+        claimLock.writeLock().lock();
+        try {
+            entriesById.clear();
+            mmrBuckets.clear();
+            mmrIndex.clear();
+            waitTimeIndex.clear();
+        } finally {
+            claimLock.writeLock().unlock();
+        }
     }
 
     /**
      * Find entries within MMR range efficiently using buckets
      */
+    @Override
     public List<QueueEntry> findByMmrRange(int minMmr, int maxMmr) {
         List<QueueEntry> result = new ArrayList<>();
 
@@ -118,16 +254,16 @@ public class OptimizedQueueRepository implements QueueRepository {
      * Get entries ordered by wait time (longest waiting first)
      */
     public List<QueueEntry> findAllByWaitTimePriority() {
-        List<QueueEntry> result = new ArrayList<>(waitTimeQueue);
-        result.sort(Comparator.comparing(QueueEntry::queueStartTime));
-        return result;
+        return new ArrayList<>(waitTimeIndex);
     }
 
     /**
      * Get the player who has been waiting the longest
      */
+    @Override
     public Optional<QueueEntry> findLongestWaiting() {
-        return Optional.ofNullable(waitTimeQueue.peek());
+        Iterator<QueueEntry> oldest = waitTimeIndex.iterator();
+        return oldest.hasNext() ? Optional.of(oldest.next()) : Optional.empty();
     }
 
     /**
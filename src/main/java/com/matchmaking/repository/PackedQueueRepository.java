@@ -0,0 +1,448 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.ClaimResult;
+import com.matchmaking.model.Player;
+import com.matchmaking.model.QueueEntry;
+import com.matchmaking.model.Role;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Struct-of-arrays queue repository for the matching hot path:
+ * - Slot arrays (mmr, packed roles, start millis, handle) kept sorted by MMR,
+ *   so a window scan walks contiguous primitive memory
+ * - Player id and display name live in per-handle side tables and are only
+ *   read when an entry is materialized (lookups and the selected window)
+ * - Handles ordered by queue start time, so the longest-waiting lookup is O(log n)
+ * - Single read/write lock; scans run under the read lock
+ * <p>
+ * Queue start times are stored as epoch millis, so sub-millisecond precision is dropped.
+ */
+public class PackedQueueRepository implements QueueRepository, PackedSlots {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int BUCKET_SIZE = 100;
+    private static final Role[] ROLES = Role.values();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Slot arrays, sorted by (mmr, startMillis, handle)
+    private int[] slotMmr = new int[INITIAL_CAPACITY];
+    private byte[] slotRoles = new byte[INITIAL_CAPACITY];
+    private long[] slotStartMillis = new long[INITIAL_CAPACITY];
+    private int[] slotHandle = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // Handle side tables, indexed by handle
+    private String[] handleIds = new String[INITIAL_CAPACITY];
+    private String[] handleNames = new String[INITIAL_CAPACITY];
+    private int[] handleMmr = new int[INITIAL_CAPACITY];
+    private long[] handleStartMillis = new long[INITIAL_CAPACITY];
+    private int[] freeHandles = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int nextHandle;
+
+    private final Map<String, Integer> handleById = new HashMap<>();
+
+    // Live handles ordered by (startMillis, handle), longest waiting first
+    private final TreeSet<Integer> waitOrder = new TreeSet<>(
+            Comparator.<Integer>comparingLong(h -> handleStartMillis[h]).thenComparingInt(h -> h));
+
+    @Override
+    public void add(QueueEntry entry) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = handleById.get(entry.getPlayerId());
+            if (existing != null) {
+                removeHandle(existing);
+            }
+            insert(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(QueueEntry entry) {
+        lock.writeLock().lock();
+        try {
+            if (handleById.containsKey(entry.getPlayerId())) {
+                return false;
+            }
+            insert(entry);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registers the new players, sorts them by slot key and merges them into the slot
+     * arrays in one backward pass, instead of shifting the arrays once per player.
+     */
+    @Override
+    public List<String> addAllIfAbsent(Collection<QueueEntry> entries) {
+        lock.writeLock().lock();
+        try {
+            List<String> added = new ArrayList<>();
+            List<Integer> handles = new ArrayList<>();
+            Map<Integer, Byte> rolesByHandle = new HashMap<>();
+            for (QueueEntry entry : entries) {
+                if (handleById.containsKey(entry.getPlayerId())) {
+                    continue;
+                }
+                int handle = registerHandle(entry);
+                handles.add(handle);
+                rolesByHandle.put(handle, Role.pack(entry.player().primaryRole(), entry.player().secondaryRole()));
+                added.add(entry.getPlayerId());
+            }
+            handles.sort(Comparator.<Integer>comparingInt(h -> handleMmr[h])
+                    .thenComparingLong(h -> handleStartMillis[h])
+                    .thenComparingInt(h -> h));
+
+            ensureSlotCapacity(size + handles.size());
+            int read = size - 1;
+            int write = size + handles.size() - 1;
+            for (int next = handles.size() - 1; next >= 0; write--) {
+                int handle = handles.get(next);
+                if (read >= 0 && compareSlot(read, handleMmr[handle], handleStartMillis[handle], handle) > 0) {
+                    moveSlot(read--, write);
+                } else {
+                    slotMmr[write] = handleMmr[handle];
+                    slotRoles[write] = rolesByHandle.get(handle);
+                    slotStartMillis[write] = handleStartMillis[handle];
+                    slotHandle[write] = handle;
+                    next--;
+                }
+            }
+            size += handles.size();
+            return added;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String playerId) {
+        lock.writeLock().lock();
+        try {
+            Integer handle = handleById.get(playerId);
+            if (handle == null) {
+                return false;
+            }
+            removeHandle(handle);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Frees the handles first, then compacts the slot arrays in one forward pass
+     */
+    @Override
+    public List<String> removeAll(Collection<String> playerIds) {
+        lock.writeLock().lock();
+        try {
+            List<String> removed = new ArrayList<>();
+            BitSet removedHandles = new BitSet(nextHandle);
+            for (String playerId : playerIds) {
+                Integer handle = handleById.remove(playerId);
+                if (handle != null) {
+                    removed.add(playerId);
+                    removedHandles.set(handle);
+                    releaseHandle(handle);
+                }
+            }
+            if (removed.isEmpty()) {
+                return removed;
+            }
+
+            int write = 0;
+            for (int read = 0; read < size; read++) {
+                if (!removedHandles.get(slotHandle[read])) {
+                    moveSlot(read, write++);
+                }
+            }
+            size = write;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public ClaimResult claimAll(List<String> playerIds) {
+        lock.writeLock().lock();
+        try {
+            List<String> missing = playerIds.stream()
+                    .filter(playerId -> !handleById.containsKey(playerId))
+                    .toList();
+            if (!missing.isEmpty()) {
+                return ClaimResult.conflict(missing);
+            }
+            for (String playerId : playerIds) {
+                Integer handle = handleById.get(playerId);
+                if (handle != null) {
+                    removeHandle(handle);
+                }
+            }
+            return ClaimResult.ok();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<QueueEntry> findById(String playerId) {
+        lock.readLock().lock();
+        try {
+            Integer handle = handleById.get(playerId);
+            if (handle == null) {
+                return Optional.empty();
+            }
+            return Optional.of(materializeSlot(slotOf(handle)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<QueueEntry> findAll() {
+        return findAllOrderedByMmr();
+    }
+
+    @Override
+    public List<QueueEntry> findAllOrderedByMmr() {
+        lock.readLock().lock();
+        try {
+            List<QueueEntry> result = new ArrayList<>(size);
+            for (int slot = 0; slot < size; slot++) {
+                result.add(materializeSlot(slot));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<QueueEntry> findByMmrRange(int minMmr, int maxMmr) {
+        lock.readLock().lock();
+        try {
+            List<QueueEntry> result = new ArrayList<>();
+            for (int slot = lowerBound(minMmr, Long.MIN_VALUE, -1); slot < size && slotMmr[slot] <= maxMmr; slot++) {
+                result.add(materializeSlot(slot));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<QueueEntry> findLongestWaiting() {
+        lock.readLock().lock();
+        try {
+            if (waitOrder.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(materializeSlot(slotOf(waitOrder.first())));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public <T> T readSlots(SlotReader<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.read(slotMmr, slotRoles, size, this::materializeSlot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(String playerId) {
+        lock.readLock().lock();
+        try {
+            return handleById.containsKey(playerId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(handleIds, 0, nextHandle, null);
+            Arrays.fill(handleNames, 0, nextHandle, null);
+            handleById.clear();
+            waitOrder.clear();
+            size = 0;
+            freeCount = 0;
+            nextHandle = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> getBucketDistribution() {
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> distribution = new TreeMap<>();
+            for (int slot = 0; slot < size; slot++) {
+                distribution.merge((slotMmr[slot] / BUCKET_SIZE) * BUCKET_SIZE, 1, Integer::sum);
+            }
+            return distribution;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(QueueEntry entry) {
+        Player player = entry.player();
+        int handle = registerHandle(entry);
+        int mmr = handleMmr[handle];
+        long startMillis = handleStartMillis[handle];
+
+        ensureSlotCapacity(size + 1);
+        int slot = lowerBound(mmr, startMillis, handle);
+        int tail = size - slot;
+        System.arraycopy(slotMmr, slot, slotMmr, slot + 1, tail);
+        System.arraycopy(slotRoles, slot, slotRoles, slot + 1, tail);
+        System.arraycopy(slotStartMillis, slot, slotStartMillis, slot + 1, tail);
+        System.arraycopy(slotHandle, slot, slotHandle, slot + 1, tail);
+
+        slotMmr[slot] = mmr;
+        slotRoles[slot] = Role.pack(player.primaryRole(), player.secondaryRole());
+        slotStartMillis[slot] = startMillis;
+        slotHandle[slot] = handle;
+        size++;
+    }
+
+    private int registerHandle(QueueEntry entry) {
+        Player player = entry.player();
+        int handle = allocateHandle();
+        handleIds[handle] = player.id();
+        handleNames[handle] = player.displayName();
+        handleMmr[handle] = player.mmr();
+        handleStartMillis[handle] = entry.queueStartTime().toEpochMilli();
+        handleById.put(player.id(), handle);
+        waitOrder.add(handle);
+        return handle;
+    }
+
+    private void moveSlot(int from, int to) {
+        slotMmr[to] = slotMmr[from];
+        slotRoles[to] = slotRoles[from];
+        slotStartMillis[to] = slotStartMillis[from];
+        slotHandle[to] = slotHandle[from];
+    }
+
+    private void removeHandle(int handle) {
+        int slot = slotOf(handle);
+        int tail = size - slot - 1;
+        System.arraycopy(slotMmr, slot + 1, slotMmr, slot, tail);
+        System.arraycopy(slotRoles, slot + 1, slotRoles, slot, tail);
+        System.arraycopy(slotStartMillis, slot + 1, slotStartMillis, slot, tail);
+        System.arraycopy(slotHandle, slot + 1, slotHandle, slot, tail);
+        size--;
+
+        handleById.remove(handleIds[handle]);
+        releaseHandle(handle);
+    }
+
+    private void releaseHandle(int handle) {
+        waitOrder.remove(handle);
+        handleIds[handle] = null;
+        handleNames[handle] = null;
+        freeHandles[freeCount++] = handle;
+    }
+
+    private int slotOf(int handle) {
+        return lowerBound(handleMmr[handle], handleStartMillis[handle], handle);
+    }
+
+    /**
+     * First slot whose (mmr, startMillis, handle) key is not less than the given key
+     */
+    private int lowerBound(int mmr, long startMillis, int handle) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareSlot(mid, mmr, startMillis, handle) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareSlot(int slot, int mmr, long startMillis, int handle) {
+        int byMmr = Integer.compare(slotMmr[slot], mmr);
+        if (byMmr != 0) {
+            return byMmr;
+        }
+        int byStart = Long.compare(slotStartMillis[slot], startMillis);
+        if (byStart != 0) {
+            return byStart;
+        }
+        return Integer.compare(slotHandle[slot], handle);
+    }
+
+    private QueueEntry materializeSlot(int slot) {
+        int handle = slotHandle[slot];
+        byte roles = slotRoles[slot];
+        Player player = Player.create(
+                handleIds[handle],
+                handleNames[handle],
+                slotMmr[slot],
+                ROLES[roles >>> 4 & 0xF],
+                ROLES[roles & 0xF]
+        );
+        return QueueEntry.create(player, Instant.ofEpochMilli(slotStartMillis[slot]));
+    }
+
+    private int allocateHandle() {
+        if (freeCount > 0) {
+            return freeHandles[--freeCount];
+        }
+        if (nextHandle == handleIds.length) {
+            int capacity = handleIds.length * 2;
+            handleIds = Arrays.copyOf(handleIds, capacity);
+            handleNames = Arrays.copyOf(handleNames, capacity);
+            handleMmr = Arrays.copyOf(handleMmr, capacity);
+            handleStartMillis = Arrays.copyOf(handleStartMillis, capacity);
+            freeHandles = Arrays.copyOf(freeHandles, capacity);
+        }
+        return nextHandle++;
+    }
+
+    private void ensureSlotCapacity(int required) {
+        if (required <= slotMmr.length) {
+            return;
+        }
+        int capacity = Math.max(required, slotMmr.length * 2);
+        slotMmr = Arrays.copyOf(slotMmr, capacity);
+        slotRoles = Arrays.copyOf(slotRoles, capacity);
+        slotStartMillis = Arrays.copyOf(slotStartMillis, capacity);
+        slotHandle = Arrays.copyOf(slotHandle, capacity);
+    }
+}
@@ -0,0 +1,29 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.QueueEntry;
+
+import java.util.function.IntFunction;
+
+/**
+ * Capability of a queue repository that keeps its entries in MMR-sorted primitive slot
+ * arrays, so window searches can scan them and materialize only the entries they select.
+ * A decorator over such a repository implements it too and forwards to the store.
+ */
+public interface PackedSlots {
+
+    /**
+     * Reads the slot arrays: {@code mmr} ascending, {@code packedRoles} as produced by
+     * {@link com.matchmaking.model.Role#pack}, {@code materializer} mapping a slot index to its entry
+     */
+    @FunctionalInterface
+    interface SlotReader<T> {
+        T read(int[] mmr, byte[] packedRoles, int size, IntFunction<QueueEntry> materializer);
+    }
+
+    /**
+     * Runs the reader over the live slot arrays under the repository's read lock. The arrays
+     * and the materializer are only valid for the duration of the call; slots past
+     * {@code size} are garbage. The reader must not write to the repository.
+     */
+    <T> T readSlots(SlotReader<T> reader);
+}
@@ -0,0 +1,109 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.Match;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player ring of the most recently saved match ids. Each ring holds at most
+ * {@code matchesPerPlayer} ids; rings of players without retained matches are dropped,
+ * so memory stays proportional to the players in the match store.
+ */
+class PlayerMatchIndex {
+    private final int matchesPerPlayer;
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    PlayerMatchIndex(int matchesPerPlayer) {
+        if (matchesPerPlayer <= 0) {
+            throw new IllegalArgumentException("matchesPerPlayer must be positive");
+        }
+        this.matchesPerPlayer = matchesPerPlayer;
+    }
+
+    void add(Match match) {
+        for (String playerId : distinctPlayerIds(match)) {
+            rings.compute(playerId, (id, ring) -> {
+                Ring target = ring != null ? ring : new Ring(matchesPerPlayer);
+                target.add(match.id());
+                return target;
+            });
+        }
+    }
+
+    void remove(Match match) {
+        for (String playerId : distinctPlayerIds(match)) {
+            rings.computeIfPresent(playerId, (id, ring) -> {
+                ring.remove(match.id());
+                return ring.isEmpty() ? null : ring;
+            });
+        }
+    }
+
+    /**
+     * Up to {@code limit} match ids of the player, most recently saved first
+     */
+    List<String> recentMatchIds(String playerId, int limit) {
+        Ring ring = rings.get(playerId);
+        return ring != null ? ring.newestFirst(limit) : List.of();
+    }
+
+    int playerCount() {
+        return rings.size();
+    }
+
+    private static Set<String> distinctPlayerIds(Match match) {
+        return new LinkedHashSet<>(match.playerIds());
+    }
+
+    private static final class Ring {
+        private final String[] ids;
+        private int head;
+        private int size;
+
+        Ring(int capacity) {
+            this.ids = new String[capacity];
+        }
+
+        synchronized void add(String matchId) {
+            ids[head] = matchId;
+            head = (head + 1) % ids.length;
+            size = Math.min(size + 1, ids.length);
+        }
+
+        // Keeps the remaining ids in order by shifting the newer ones back one slot
+        synchronized void remove(String matchId) {
+            for (int age = 0; age < size; age++) {
+                int slot = Math.floorMod(head - 1 - age, ids.length);
+                if (!matchId.equals(ids[slot])) {
+                    continue;
+                }
+                for (int newer = age; newer > 0; newer--) {
+                    int to = Math.floorMod(head - 1 - newer, ids.length);
+                    ids[to] = ids[Math.floorMod(to + 1, ids.length)];
+                }
+                head = Math.floorMod(head - 1, ids.length);
+                ids[head] = null;
+                size--;
+                return;
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+
+        synchronized List<String> newestFirst(int limit) {
+            int count = Math.min(limit, size);
+            List<String> result = new ArrayList<>(count);
+            for (int age = 0; age < count; age++) {
+                result.add(ids[Math.floorMod(head - 1 - age, ids.length)]);
+            }
+            return result;
+        }
+    }
+}
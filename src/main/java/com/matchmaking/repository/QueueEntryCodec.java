@@ -0,0 +1,12 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.QueueEntry;
+
+/**
+ * Serialized form of a queue entry for out-of-process storage
+ */
+public interface QueueEntryCodec {
+    byte[] encode(QueueEntry entry);
+
+    QueueEntry decode(byte[] bytes);
+}
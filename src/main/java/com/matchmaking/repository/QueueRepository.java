@@ -1,21 +1,91 @@
 package com.matchmaking.repository;
 
+import com.matchmaking.model.ClaimResult;
 import com.matchmaking.model.QueueEntry;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public interface QueueRepository {
     void add(QueueEntry entry);
 
+    /**
+     * Adds the entry only if the player is not queued yet, as one atomic step.
+     * Returns false, leaving the existing entry untouched, if the player was already queued.
+     */
+    boolean addIfAbsent(QueueEntry entry);
+
+    /**
+     * Batch {@link #addIfAbsent}: adds every entry whose player is not queued yet and
+     * returns the added player ids. If a player appears twice in the batch, the first
+     * entry wins.
+     */
+    default List<String> addAllIfAbsent(Collection<QueueEntry> entries) {
+        List<String> added = new ArrayList<>();
+        for (QueueEntry entry : entries) {
+            if (addIfAbsent(entry)) {
+                added.add(entry.getPlayerId());
+            }
+        }
+        return added;
+    }
+
     boolean remove(String playerId);
 
+    /**
+     * Atomically removes all given players if every one of them is still queued.
+     * Otherwise nothing is removed and the result lists the missing ids, so
+     * concurrent matchers can build matches optimistically and retry on conflict.
+     */
+    ClaimResult claimAll(List<String> playerIds);
+
+    /**
+     * Removes whichever of the players are queued and returns their ids. Not atomic;
+     * use {@link #claimAll} when all players must be taken together.
+     */
+    default List<String> removeAll(Collection<String> playerIds) {
+        List<String> removed = new ArrayList<>();
+        for (String playerId : playerIds) {
+            if (remove(playerId)) {
+                removed.add(playerId);
+            }
+        }
+        return removed;
+    }
+
     Optional<QueueEntry> findById(String playerId);
 
     List<QueueEntry> findAll();
 
+    /**
+     * All entries in ascending MMR order. Implementations that keep an MMR index
+     * return a read-only live view instead of a sorted copy.
+     */
+    default Collection<QueueEntry> findAllOrderedByMmr() {
+        List<QueueEntry> sorted = new ArrayList<>(findAll());
+        sorted.sort(Comparator.comparingInt(e -> e.player().mmr()));
+        return sorted;
+    }
+
+    /**
+     * Entries with MMR in [minMmr, maxMmr], in no particular order
+     */
+    default List<QueueEntry> findByMmrRange(int minMmr, int maxMmr) {
+        return findAll().stream()
+                .filter(e -> e.player().mmr() >= minMmr && e.player().mmr() <= maxMmr)
+                .collect(Collectors.toList());
+    }
+
+    default Optional<QueueEntry> findLongestWaiting() {
+        return findAll().stream().min(Comparator.comparing(QueueEntry::queueStartTime));
+    }
+
     boolean contains(String playerId);
 
     int size();
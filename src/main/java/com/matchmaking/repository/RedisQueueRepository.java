@@ -1,74 +1,195 @@
 package com.matchmaking.repository;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.matchmaking.model.ClaimResult;
 import com.matchmaking.model.QueueEntry;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Redis-backed queue repository with:
- * - Hash for player data storage
+ * - Hash for player data storage, values encoded by a {@link QueueEntryCodec}
  * - Sorted Set for MMR-based ordering
  * - Sorted Set for wait time ordering
+ * <p>
+ * Entry values are read and written as raw bytes, independent of the template's
+ * hash value serializer.
+ * <p>
+ * Every write script also appends one event per changed player to a capped change
+ * stream, which {@link MirroredQueueRepository} tails to keep a local copy in sync.
  */
 public class RedisQueueRepository implements QueueRepository {
     private static final String QUEUE_HASH_KEY = "matchmaking:queue:players";
     private static final String MMR_ZSET_KEY = "matchmaking:queue:mmr";
     private static final String WAIT_ZSET_KEY = "matchmaking:queue:waittime";
+    private static final String CHANGE_STREAM_KEY = "matchmaking:queue:changes";
+    private static final List<String> QUEUE_KEYS =
+            List.of(QUEUE_HASH_KEY, MMR_ZSET_KEY, WAIT_ZSET_KEY, CHANGE_STREAM_KEY);
+
+    private static final byte[] QUEUE_HASH_KEY_BYTES = bytes(QUEUE_HASH_KEY);
+    private static final byte[] CHANGE_STREAM_KEY_BYTES = bytes(CHANGE_STREAM_KEY);
+
+    private static final int BUCKET_SIZE = 100;
+
+    public static final int DEFAULT_CHANGE_STREAM_MAX_LENGTH = 100_000;
+    static final String STREAM_START_ID = "0-0";
+
+    /**
+     * One change stream event. {@code entry} is only set for {@link ChangeType#ADD};
+     * {@code playerId} is null for {@link ChangeType#CLEAR}.
+     */
+    record Change(String id, ChangeType type, String playerId, QueueEntry entry) {}
+
+    enum ChangeType { ADD, REMOVE, CLEAR }
+
+    /**
+     * Result of a write together with the change stream position as of which it holds: the
+     * id of the newest event once the write's own events are in. Empty if publishing is disabled.
+     */
+    record Published<T>(T result, String changeId) {}
 
     private final RedisTemplate<String, String> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final QueueEntryCodec codec;
+    private final String changeStreamMaxLength;
 
     public RedisQueueRepository(RedisTemplate<String, String> redisTemplate) {
+        this(redisTemplate, new JsonQueueEntryCodec());
+    }
+
+    public RedisQueueRepository(RedisTemplate<String, String> redisTemplate, QueueEntryCodec codec) {
+        this(redisTemplate, codec, DEFAULT_CHANGE_STREAM_MAX_LENGTH);
+    }
+
+    /**
+     * @param changeStreamMaxLength approximate number of events kept in the change stream;
+     *                              0 disables publishing
+     */
+    public RedisQueueRepository(RedisTemplate<String, String> redisTemplate, QueueEntryCodec codec,
+                                int changeStreamMaxLength) {
+        if (changeStreamMaxLength < 0) {
+            throw new IllegalArgumentException("changeStreamMaxLength must not be negative");
+        }
         this.redisTemplate = redisTemplate;
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
+        this.codec = codec;
+        this.changeStreamMaxLength = String.valueOf(changeStreamMaxLength);
     }
 
+    /**
+     * HSET and both ZADDs in one atomic script call
+     */
     @Override
     public void add(QueueEntry entry) {
-        String playerId = entry.getPlayerId();
-        String json = serialize(entry);
+        addPublished(entry);
+    }
 
-        // Store in hash
-        redisTemplate.opsForHash().put(QUEUE_HASH_KEY, playerId, json);
+    String addPublished(QueueEntry entry) {
+        return runAddScript(RedisQueueScripts.ADD, entry).changeId();
+    }
 
-        // Add to MMR sorted set (score = MMR)
-        redisTemplate.opsForZSet().add(MMR_ZSET_KEY, playerId, entry.player().mmr());
+    /**
+     * HSETNX-guarded add in one atomic script call
+     */
+    @Override
+    public boolean addIfAbsent(QueueEntry entry) {
+        return addIfAbsentPublished(entry).result();
+    }
 
-        // Add to wait time sorted set (score = timestamp millis)
-        redisTemplate.opsForZSet().add(WAIT_ZSET_KEY, playerId,
-                entry.queueStartTime().toEpochMilli());
+    Published<Boolean> addIfAbsentPublished(QueueEntry entry) {
+        Published<List<String>> added = runAddScript(RedisQueueScripts.ADD_IF_ABSENT, entry);
+        return new Published<>(!added.result().isEmpty(), added.changeId());
+    }
+
+    /**
+     * Whole batch in one atomic script call
+     */
+    @Override
+    public List<String> addAllIfAbsent(Collection<QueueEntry> entries) {
+        return addAllIfAbsentPublished(entries).result();
+    }
+
+    Published<List<String>> addAllIfAbsentPublished(Collection<QueueEntry> entries) {
+        if (entries.isEmpty()) {
+            return new Published<>(List.of(), "");
+        }
+        List<byte[]> args = new ArrayList<>(entries.size() * 4 + 1);
+        args.add(bytes(changeStreamMaxLength));
+        for (QueueEntry entry : entries) {
+            args.add(bytes(entry.getPlayerId()));
+            args.add(codec.encode(entry));
+            args.add(bytes(String.valueOf(entry.player().mmr())));
+            args.add(bytes(String.valueOf(entry.queueStartTime().toEpochMilli())));
+        }
+        return runWriteScript(RedisQueueScripts.ADD_ALL_IF_ABSENT, RedisSerializer.byteArray(), args.toArray());
     }
 
     @Override
     public boolean remove(String playerId) {
-        Long removed = redisTemplate.opsForHash().delete(QUEUE_HASH_KEY, playerId);
-        redisTemplate.opsForZSet().remove(MMR_ZSET_KEY, playerId);
-        redisTemplate.opsForZSet().remove(WAIT_ZSET_KEY, playerId);
-        return removed != null && removed > 0;
+        return !removeAll(List.of(playerId)).isEmpty();
+    }
+
+    /**
+     * Removes the players from the hash and both sorted sets in one atomic script call
+     * and returns the ids that were actually queued.
+     */
+    @Override
+    public List<String> removeAll(Collection<String> playerIds) {
+        return removeAllPublished(playerIds).result();
+    }
+
+    Published<List<String>> removeAllPublished(Collection<String> playerIds) {
+        if (playerIds.isEmpty()) {
+            return new Published<>(List.of(), "");
+        }
+        return runWriteScript(RedisQueueScripts.REMOVE_ALL, RedisSerializer.string(), withStreamMaxLength(playerIds));
+    }
+
+    /**
+     * Atomic claim in one script call: checks every id in the player hash and, only if all
+     * are present, removes them from the hash and both sorted sets. Safe across several
+     * matchmaker nodes sharing one Redis without a global lock.
+     */
+    @Override
+    public ClaimResult claimAll(List<String> playerIds) {
+        return claimAllPublished(playerIds).result();
+    }
+
+    Published<ClaimResult> claimAllPublished(List<String> playerIds) {
+        if (playerIds.isEmpty()) {
+            return new Published<>(ClaimResult.ok(), "");
+        }
+        Published<List<String>> missing = runWriteScript(RedisQueueScripts.CLAIM_ALL, RedisSerializer.string(),
+                withStreamMaxLength(playerIds));
+        if (missing.result().isEmpty()) {
+            return new Published<>(ClaimResult.ok(), missing.changeId());
+        }
+        return new Published<>(ClaimResult.conflict(missing.result()), missing.changeId());
     }
 
     @Override
     public Optional<QueueEntry> findById(String playerId) {
-        Object json = redisTemplate.opsForHash().get(QUEUE_HASH_KEY, playerId);
-        if (json == null) {
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.hashCommands().hGet(QUEUE_HASH_KEY_BYTES, bytes(playerId)));
+        if (value == null) {
             return Optional.empty();
         }
-        return Optional.of(deserialize((String) json));
+        return Optional.of(codec.decode(value));
     }
 
     @Override
     public List<QueueEntry> findAll() {
-        Map<Object, Object> entries = redisTemplate.opsForHash().entries(QUEUE_HASH_KEY);
-        return entries.values().stream()
-                .map(json -> deserialize((String) json))
-                .collect(Collectors.toList());
+        List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.hashCommands().hVals(QUEUE_HASH_KEY_BYTES));
+        return decodeAll(values);
     }
 
     @Override
@@ -84,91 +205,208 @@ public class RedisQueueRepository implements QueueRepository {
 
     @Override
     public void clear() {
-        redisTemplate.delete(QUEUE_HASH_KEY);
-        redisTemplate.delete(MMR_ZSET_KEY);
-        redisTemplate.delete(WAIT_ZSET_KEY);
+        clearPublished();
+    }
+
+    String clearPublished() {
+        return runWriteScript(RedisQueueScripts.CLEAR, RedisSerializer.string(),
+                new Object[]{changeStreamMaxLength}).changeId();
     }
 
     /**
-     * Find entries within MMR range using Redis sorted set
+     * Id of the newest change stream event, or {@value #STREAM_START_ID} if the stream is empty
      */
-    public List<QueueEntry> findByMmrRange(int minMmr, int maxMmr) {
-        Set<String> playerIds = redisTemplate.opsForZSet()
-                .rangeByScore(MMR_ZSET_KEY, minMmr, maxMmr);
+    String latestChangeId() {
+        List<ByteRecord> latest = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xRevRange(CHANGE_STREAM_KEY_BYTES, Range.unbounded(), Limit.limit().count(1)));
+        if (latest == null || latest.isEmpty()) {
+            return STREAM_START_ID;
+        }
+        return latest.get(0).getId().getValue();
+    }
 
-        if (playerIds == null || playerIds.isEmpty()) {
-            return Collections.emptyList();
+    /**
+     * True if events after {@code changeId} may have been trimmed from the change stream
+     * before they were read: the oldest event left is newer than {@code changeId}. From
+     * {@value #STREAM_START_ID} (the stream was empty) a first event cannot be told apart
+     * from a trimmed one, so there the stream counts as trimmed once it reaches its max length.
+     */
+    boolean changesTrimmedAfter(String changeId) {
+        if (STREAM_START_ID.equals(changeId)) {
+            Long length = redisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.streamCommands().xLen(CHANGE_STREAM_KEY_BYTES));
+            int maxLength = Integer.parseInt(changeStreamMaxLength);
+            return maxLength > 0 && length != null && length >= maxLength;
+        }
+        List<ByteRecord> oldest = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xRange(CHANGE_STREAM_KEY_BYTES, Range.unbounded(), Limit.limit().count(1)));
+        if (oldest == null || oldest.isEmpty()) {
+            return false;
         }
+        return compareChangeIds(oldest.get(0).getId().getValue(), changeId) > 0;
+    }
 
-        return playerIds.stream()
-                .map(this::findById)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
+    /**
+     * Orders change stream ids ({@code millis-sequence}) numerically
+     */
+    static int compareChangeIds(String a, String b) {
+        int aDash = a.indexOf('-');
+        int bDash = b.indexOf('-');
+        int byMillis = Long.compare(Long.parseLong(a, 0, aDash, 10), Long.parseLong(b, 0, bDash, 10));
+        if (byMillis != 0) {
+            return byMillis;
+        }
+        return Long.compare(Long.parseLong(a, aDash + 1, a.length(), 10), Long.parseLong(b, bDash + 1, b.length(), 10));
     }
 
     /**
-     * Get entries ordered by wait time (oldest first)
+     * Up to {@code count} change stream events after {@code afterId}, oldest first.
+     * Non-blocking, so it runs on the shared connection.
      */
-    public List<QueueEntry> findAllByWaitTimePriority() {
-        Set<String> playerIds = redisTemplate.opsForZSet().range(WAIT_ZSET_KEY, 0, -1);
+    @SuppressWarnings("unchecked")
+    List<Change> readChanges(String afterId, int count) {
+        List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xRead(StreamReadOptions.empty().count(count),
+                        StreamOffset.create(CHANGE_STREAM_KEY_BYTES, ReadOffset.from(afterId))));
+        if (records == null || records.isEmpty()) {
+            return List.of();
+        }
 
-        if (playerIds == null || playerIds.isEmpty()) {
-            return Collections.emptyList();
+        List<Change> changes = new ArrayList<>(records.size());
+        for (ByteRecord record : records) {
+            changes.add(toChange(record));
         }
+        return changes;
+    }
 
-        return playerIds.stream()
-                .map(this::findById)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
+    /**
+     * Find entries within MMR range, in ascending MMR order. One script call walks the
+     * MMR sorted set and fetches the entries with chunked HMGET on the server.
+     */
+    @Override
+    public List<QueueEntry> findByMmrRange(int minMmr, int maxMmr) {
+        return runEntriesScript(RedisQueueScripts.ENTRIES_BY_SCORE, MMR_ZSET_KEY, minMmr, maxMmr);
+    }
+
+    /**
+     * Get entries ordered by wait time (oldest first)
+     */
+    public List<QueueEntry> findAllByWaitTimePriority() {
+        return runEntriesScript(RedisQueueScripts.ENTRIES_BY_RANK, WAIT_ZSET_KEY, 0, -1);
     }
 
     /**
      * Get longest waiting player
      */
+    @Override
     public Optional<QueueEntry> findLongestWaiting() {
-        Set<String> oldest = redisTemplate.opsForZSet().range(WAIT_ZSET_KEY, 0, 0);
-        if (oldest == null || oldest.isEmpty()) {
-            return Optional.empty();
+        return runEntriesScript(RedisQueueScripts.ENTRIES_BY_RANK, WAIT_ZSET_KEY, 0, 0)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Players per 100-MMR bucket, counted inside Redis with one ZCOUNT per bucket
+     * (O(buckets * log n)); only the non-empty bucket counts cross the network.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<Integer, Integer> getBucketDistribution() {
+        List<Object> pairs = redisTemplate.execute(RedisQueueScripts.SCORE_HISTOGRAM, List.of(MMR_ZSET_KEY),
+                String.valueOf(BUCKET_SIZE));
+
+        Map<Integer, Integer> distribution = new TreeMap<>();
+        if (pairs != null) {
+            for (int i = 0; i + 1 < pairs.size(); i += 2) {
+                distribution.put(((Number) pairs.get(i)).intValue(), ((Number) pairs.get(i + 1)).intValue());
+            }
         }
-        return findById(oldest.iterator().next());
+        return distribution;
     }
 
     /**
      * Get MMR distribution
      */
     public Map<Integer, Integer> getMmrDistribution() {
-        Map<Integer, Integer> distribution = new TreeMap<>();
+        return getBucketDistribution();
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private List<QueueEntry> runEntriesScript(RedisScript<List> script, String indexKey, long from, long to) {
+        // Raw byte results: with a List script type each element goes through the result serializer
+        RedisSerializer rawValues = RedisSerializer.byteArray();
+        List<byte[]> values = (List<byte[]>) redisTemplate.execute(script, RedisSerializer.string(), rawValues,
+                List.of(indexKey, QUEUE_HASH_KEY), String.valueOf(from), String.valueOf(to));
+        return decodeAll(values);
+    }
 
-        Set<ZSetOperations.TypedTuple<String>> entries =
-                redisTemplate.opsForZSet().rangeWithScores(MMR_ZSET_KEY, 0, -1);
+    @SuppressWarnings("rawtypes")
+    private Published<List<String>> runAddScript(RedisScript<List> script, QueueEntry entry) {
+        return runWriteScript(script, RedisSerializer.byteArray(), new Object[]{
+                bytes(changeStreamMaxLength),
+                bytes(entry.getPlayerId()),
+                codec.encode(entry),
+                bytes(String.valueOf(entry.player().mmr())),
+                bytes(String.valueOf(entry.queueStartTime().toEpochMilli()))});
+    }
+
+    // Write script replies are the stream position followed by the result ids
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private Published<List<String>> runWriteScript(RedisScript<List> script, RedisSerializer argsSerializer,
+                                                   Object[] args) {
+        RedisSerializer ids = RedisSerializer.string();
+        List<String> reply = (List<String>) redisTemplate.execute(script, argsSerializer, ids, QUEUE_KEYS, args);
+        if (reply == null || reply.isEmpty()) {
+            return new Published<>(List.of(), "");
+        }
+        return new Published<>(reply.subList(1, reply.size()), reply.get(0));
+    }
 
-        if (entries != null) {
-            for (ZSetOperations.TypedTuple<String> entry : entries) {
-                if (entry.getScore() != null) {
-                    int bucket = (entry.getScore().intValue() / 100) * 100;
-                    distribution.merge(bucket, 1, Integer::sum);
-                }
+    private Change toChange(ByteRecord record) {
+        String op = null;
+        String playerId = null;
+        byte[] entry = null;
+        for (Map.Entry<byte[], byte[]> field : record.getValue().entrySet()) {
+            switch (new String(field.getKey(), StandardCharsets.UTF_8)) {
+                case "op" -> op = new String(field.getValue(), StandardCharsets.UTF_8);
+                case "id" -> playerId = new String(field.getValue(), StandardCharsets.UTF_8);
+                case "entry" -> entry = field.getValue();
+                default -> { }
             }
         }
 
-        return distribution;
+        String id = record.getId().getValue();
+        return switch (op == null ? "" : op) {
+            case "add" -> new Change(id, ChangeType.ADD, playerId, codec.decode(entry));
+            case "remove" -> new Change(id, ChangeType.REMOVE, playerId, null);
+            case "clear" -> new Change(id, ChangeType.CLEAR, null, null);
+            default -> throw new IllegalStateException("Unknown queue change event " + id + ": " + op);
+        };
     }
 
-    private String serialize(QueueEntry entry) {
-        try {
-            return objectMapper.writeValueAsString(entry);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to serialize QueueEntry", e);
+    private Object[] withStreamMaxLength(Collection<String> playerIds) {
+        Object[] args = new Object[playerIds.size() + 1];
+        args[0] = changeStreamMaxLength;
+        int i = 1;
+        for (String playerId : playerIds) {
+            args[i++] = playerId;
         }
+        return args;
     }
 
-    private QueueEntry deserialize(String json) {
-        try {
-            return objectMapper.readValue(json, QueueEntry.class);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to deserialize QueueEntry", e);
+    private List<QueueEntry> decodeAll(Collection<byte[]> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<QueueEntry> entries = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            entries.add(codec.decode(value));
         }
+        return entries;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
     }
 }
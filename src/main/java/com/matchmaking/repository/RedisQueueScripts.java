@@ -0,0 +1,214 @@
+package com.matchmaking.repository;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/**
+ * Lua scripts used by {@link RedisQueueRepository}. Each runs atomically server-side
+ * in one round trip on the shared connection. Write scripts take KEYS[1] entry hash,
+ * KEYS[2] MMR sorted set, KEYS[3] wait-time sorted set, KEYS[4] change stream, and
+ * append one change event per player to the stream when the stream max length is > 0.
+ * Their reply starts with the stream position as of which the write's result holds
+ * (see {@code position} below), followed by the result ids.
+ */
+final class RedisQueueScripts {
+
+    // Change events: op=add with the encoded entry, op=remove with the player id only.
+    // position() is the newest stream id once the script's own events are in, so a reader
+    // that applied the stream up to it has seen the write; '' when publishing is disabled.
+    private static final String PUBLISH = """
+            local function publish(stream, max_len, op, id, entry)
+              if tonumber(max_len) > 0 then
+                if entry then
+                  redis.call('XADD', stream, 'MAXLEN', '~', max_len, '*', 'op', op, 'id', id, 'entry', entry)
+                else
+                  redis.call('XADD', stream, 'MAXLEN', '~', max_len, '*', 'op', op, 'id', id)
+                end
+              end
+            end
+            local function position(stream, max_len)
+              if tonumber(max_len) == 0 then
+                return ''
+              end
+              local newest = redis.call('XREVRANGE', stream, '+', '-', 'COUNT', 1)
+              if #newest == 0 then
+                return '0-0'
+              end
+              return newest[1][1]
+            end
+            """;
+
+    // Appends HMGET values for `ids` to `result` in id order, skipping ids no longer in the hash.
+    // Chunked so a large range never exceeds Lua's unpack() stack limit.
+    private static final String HMGET_CHUNKED = """
+            local function hmget_chunked(hash, ids, result)
+              for i = 1, #ids, 1000 do
+                local chunk = {}
+                for j = i, math.min(i + 999, #ids) do
+                  chunk[#chunk + 1] = ids[j]
+                end
+                local values = redis.call('HMGET', hash, unpack(chunk))
+                for k = 1, #chunk do
+                  if values[k] then
+                    result[#result + 1] = values[k]
+                  end
+                end
+              end
+              return result
+            end
+            """;
+
+    /**
+     * ARGV[1] stream max length, ARGV[2] player id, ARGV[3] serialized entry,
+     * ARGV[4] MMR, ARGV[5] queue start millis. Returns the position only.
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> ADD = new DefaultRedisScript<>(PUBLISH + """
+            redis.call('HSET', KEYS[1], ARGV[2], ARGV[3])
+            redis.call('ZADD', KEYS[2], ARGV[4], ARGV[2])
+            redis.call('ZADD', KEYS[3], ARGV[5], ARGV[2])
+            publish(KEYS[4], ARGV[1], 'add', ARGV[2], ARGV[3])
+            return {position(KEYS[4], ARGV[1])}
+            """, List.class);
+
+    /**
+     * Same arguments as {@link #ADD}. HSETNX decides; the indexes and the change stream
+     * are only written when the player was not queued. Returns the player id after the
+     * position if added.
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> ADD_IF_ABSENT = new DefaultRedisScript<>(PUBLISH + """
+            if redis.call('HSETNX', KEYS[1], ARGV[2], ARGV[3]) == 0 then
+              return {position(KEYS[4], ARGV[1])}
+            end
+            redis.call('ZADD', KEYS[2], ARGV[4], ARGV[2])
+            redis.call('ZADD', KEYS[3], ARGV[5], ARGV[2])
+            publish(KEYS[4], ARGV[1], 'add', ARGV[2], ARGV[3])
+            return {position(KEYS[4], ARGV[1]), ARGV[2]}
+            """, List.class);
+
+    /**
+     * ARGV[1] stream max length, then one (player id, serialized entry, MMR, queue start
+     * millis) group per player. Batch form of {@link #ADD_IF_ABSENT}; returns the added ids.
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> ADD_ALL_IF_ABSENT = new DefaultRedisScript<>(PUBLISH + """
+            local added = {''}
+            for i = 2, #ARGV, 4 do
+              if redis.call('HSETNX', KEYS[1], ARGV[i], ARGV[i + 1]) == 1 then
+                redis.call('ZADD', KEYS[2], ARGV[i + 2], ARGV[i])
+                redis.call('ZADD', KEYS[3], ARGV[i + 3], ARGV[i])
+                publish(KEYS[4], ARGV[1], 'add', ARGV[i], ARGV[i + 1])
+                added[#added + 1] = ARGV[i]
+              end
+            end
+            added[1] = position(KEYS[4], ARGV[1])
+            return added
+            """, List.class);
+
+    /**
+     * ARGV[1] stream max length. Deletes the hash and both sorted sets, keeping the stream.
+     * Returns the position only.
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> CLEAR = new DefaultRedisScript<>(PUBLISH + """
+            redis.call('DEL', KEYS[1], KEYS[2], KEYS[3])
+            if tonumber(ARGV[1]) > 0 then
+              redis.call('XADD', KEYS[4], 'MAXLEN', '~', ARGV[1], '*', 'op', 'clear')
+            end
+            return {position(KEYS[4], ARGV[1])}
+            """, List.class);
+
+    /**
+     * ARGV[1] stream max length, ARGV[2..] player ids. Returns the ids that were present in the hash.
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> REMOVE_ALL = new DefaultRedisScript<>(PUBLISH + """
+            local removed = {''}
+            for i = 2, #ARGV do
+              if redis.call('HDEL', KEYS[1], ARGV[i]) == 1 then
+                removed[#removed + 1] = ARGV[i]
+                publish(KEYS[4], ARGV[1], 'remove', ARGV[i])
+              end
+              redis.call('ZREM', KEYS[2], ARGV[i])
+              redis.call('ZREM', KEYS[3], ARGV[i])
+            end
+            removed[1] = position(KEYS[4], ARGV[1])
+            return removed
+            """, List.class);
+
+    /**
+     * ARGV[1] stream max length, ARGV[2..] player ids. All-or-nothing: if every id is in
+     * the hash, removes them from the hash and both sorted sets and returns no ids;
+     * otherwise removes nothing and returns the missing ids.
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> CLAIM_ALL = new DefaultRedisScript<>(PUBLISH + """
+            local missing = {''}
+            for i = 2, #ARGV do
+              if redis.call('HEXISTS', KEYS[1], ARGV[i]) == 0 then
+                missing[#missing + 1] = ARGV[i]
+              end
+            end
+            missing[1] = position(KEYS[4], ARGV[1])
+            if #missing > 1 then
+              return missing
+            end
+            for i = 2, #ARGV do
+              redis.call('HDEL', KEYS[1], ARGV[i])
+              redis.call('ZREM', KEYS[2], ARGV[i])
+              redis.call('ZREM', KEYS[3], ARGV[i])
+              publish(KEYS[4], ARGV[1], 'remove', ARGV[i])
+            end
+            return {position(KEYS[4], ARGV[1])}
+            """, List.class);
+
+    /**
+     * KEYS[1] sorted set, KEYS[2] entry hash; ARGV[1..2] min/max score.
+     * Returns serialized entries in ascending score order.
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> ENTRIES_BY_SCORE = new DefaultRedisScript<>(HMGET_CHUNKED + """
+            local ids = redis.call('ZRANGEBYSCORE', KEYS[1], ARGV[1], ARGV[2])
+            return hmget_chunked(KEYS[2], ids, {})
+            """, List.class);
+
+    /**
+     * KEYS[1] sorted set, KEYS[2] entry hash; ARGV[1..2] start/stop rank.
+     * Returns serialized entries in ascending score order.
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> ENTRIES_BY_RANK = new DefaultRedisScript<>(HMGET_CHUNKED + """
+            local ids = redis.call('ZRANGE', KEYS[1], ARGV[1], ARGV[2])
+            return hmget_chunked(KEYS[2], ids, {})
+            """, List.class);
+
+    /**
+     * KEYS[1] sorted set; ARGV[1] bucket width. One ZCOUNT per bucket between the lowest
+     * and highest score. Returns flat [bucketStart, count, ...] pairs for non-empty buckets.
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> SCORE_HISTOGRAM = new DefaultRedisScript<>("""
+            local width = tonumber(ARGV[1])
+            local lowest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+            if #lowest == 0 then
+              return {}
+            end
+            local highest = redis.call('ZRANGE', KEYS[1], -1, -1, 'WITHSCORES')
+            local result = {}
+            local last = math.floor(tonumber(highest[2]) / width) * width
+            for bucket = math.floor(tonumber(lowest[2]) / width) * width, last, width do
+              local count = redis.call('ZCOUNT', KEYS[1], bucket, '(' .. (bucket + width))
+              if count > 0 then
+                result[#result + 1] = bucket
+                result[#result + 1] = count
+              end
+            end
+            return result
+            """, List.class);
+
+    private RedisQueueScripts() {
+    }
+}
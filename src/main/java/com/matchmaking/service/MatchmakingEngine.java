@@ -0,0 +1,178 @@
+package com.matchmaking.service;
+
+import com.matchmaking.config.MatchmakingConfig;
+import com.matchmaking.metrics.MatchmakingMetrics;
+import com.matchmaking.model.Match;
+import com.matchmaking.model.MatchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs matchmaking on a dedicated thread at a fixed rate. Each tick first anchors
+ * a match on the longest-waiting player, then drains the queue in batch up to
+ * maxMatchesPerTick. All matching work happens on the engine thread; callers can
+ * only request an extra tick, and pending requests are merged.
+ */
+public class MatchmakingEngine {
+    private static final String THREAD_NAME = "matchmaking-engine";
+
+    public record EngineStats(
+            boolean running,
+            long ticks,
+            long matchesCreated,
+            long tickErrors,
+            String lastTickError,
+            int lastTickMatches,
+            long lastTickDurationMicros,
+            int backlog
+    ) {}
+
+    private final MatchmakingService matchmakingService;
+    private final QueueService queueService;
+    private final MatchmakingMetrics metrics;
+    private final MatchmakingConfig config;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong matchesCreated = new AtomicLong();
+    private final AtomicLong tickErrors = new AtomicLong();
+    private final AtomicBoolean tickRequested = new AtomicBoolean();
+    private volatile boolean running;
+    private volatile String lastTickError;
+    private volatile int lastTickMatches;
+    private volatile long lastTickDurationNanos;
+    private volatile int backlog;
+
+    public MatchmakingEngine(MatchmakingService matchmakingService,
+                             QueueService queueService,
+                             MatchmakingMetrics metrics,
+                             MatchmakingConfig config) {
+        this.matchmakingService = matchmakingService;
+        this.queueService = queueService;
+        this.metrics = metrics;
+        this.config = config;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        if (!config.isEngineEnabled() || running) {
+            return;
+        }
+        running = true;
+        long interval = config.getTickIntervalMs();
+        executor.scheduleAtFixedRate(this::safeTick, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues an extra tick on the engine thread. Requests made while one is still waiting
+     * to start are merged into it, so a burst of requests queues at most one tick.
+     * Returns false if the engine is disabled or stopped.
+     */
+    public boolean requestTick() {
+        if (!config.isEngineEnabled()) {
+            return false;
+        }
+        if (!tickRequested.compareAndSet(false, true)) {
+            return true;
+        }
+        try {
+            executor.execute(this::requestedTick);
+            return true;
+        } catch (RejectedExecutionException e) {
+            tickRequested.set(false);
+            return false;
+        }
+    }
+
+    /**
+     * Runs one tick on the calling thread and returns the matches it created.
+     * Only the engine thread calls this outside of tests.
+     */
+    List<Match> tick() {
+        long start = System.nanoTime();
+        List<Match> created = new ArrayList<>();
+
+        // Longest waiter first, so outliers are not starved by the batch pass
+        MatchResult anchored = matchmakingService.tryCreateAnchoredMatch();
+        anchored.getMatch().ifPresent(created::add);
+
+        int remaining = config.getMaxMatchesPerTick() - created.size();
+        if (remaining > 0) {
+            created.addAll(matchmakingService.createMatches(remaining));
+        }
+
+        for (Match match : created) {
+            metrics.recordMatchCreated(match);
+            metrics.recordWaitTimes(match);
+            metrics.recordPlayersDequeued(config.getPlayersPerMatch());
+        }
+
+        int queueSize = queueService.getQueueSize();
+        if (created.isEmpty() && queueSize >= config.getPlayersPerMatch()) {
+            metrics.recordMatchFailed(anchored.failureReason());
+        }
+
+        long duration = System.nanoTime() - start;
+        ticks.incrementAndGet();
+        matchesCreated.addAndGet(created.size());
+        lastTickMatches = created.size();
+        lastTickDurationNanos = duration;
+        backlog = queueSize;
+        metrics.recordEngineTick(duration, created.size(), queueSize);
+
+        return created;
+    }
+
+    public EngineStats getStats() {
+        return new EngineStats(
+                running,
+                ticks.get(),
+                matchesCreated.get(),
+                tickErrors.get(),
+                lastTickError,
+                lastTickMatches,
+                TimeUnit.NANOSECONDS.toMicros(lastTickDurationNanos),
+                backlog
+        );
+    }
+
+    // Cleared before the tick runs, so a request arriving mid-tick queues the next one
+    private void requestedTick() {
+        tickRequested.set(false);
+        safeTick();
+    }
+
+    // An exception escaping a scheduled task cancels all later runs
+    private void safeTick() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            lastTickError = e.toString();
+            tickErrors.incrementAndGet();
+        }
+    }
+}
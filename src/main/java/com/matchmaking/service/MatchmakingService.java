@@ -1,23 +1,32 @@
 package com.matchmaking.service;
 
+import com.matchmaking.algorithm.MmrToleranceCalculator;
 import com.matchmaking.algorithm.MmrWindowFinder;
 import com.matchmaking.config.MatchmakingConfig;
+import com.matchmaking.metrics.PipelineListener;
+import com.matchmaking.metrics.PipelineListener.Stage;
 import com.matchmaking.model.*;
 import com.matchmaking.repository.MatchRepository;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
 public class MatchmakingService {
+    private static final int MAX_CLAIM_ATTEMPTS = 3;
+
     private final QueueService queueService;
     private final RoleAssignmentService roleAssignmentService;
     private final TeamBalancerService teamBalancerService;
     private final MmrWindowFinder mmrWindowFinder;
     private final MatchRepository matchRepository;
     private final MatchmakingConfig config;
+    private final MmrToleranceCalculator toleranceCalculator;
     private final Clock clock;
+    private final PipelineListener listener;
 
     public MatchmakingService(
             QueueService queueService,
@@ -38,65 +47,245 @@ public class MatchmakingService {
             MatchRepository matchRepository,
             MatchmakingConfig config,
             Clock clock) {
+        this(queueService, roleAssignmentService, teamBalancerService,
+             mmrWindowFinder, matchRepository, config, clock, PipelineListener.NOOP);
+    }
+
+    public MatchmakingService(
+            QueueService queueService,
+            RoleAssignmentService roleAssignmentService,
+            TeamBalancerService teamBalancerService,
+            MmrWindowFinder mmrWindowFinder,
+            MatchRepository matchRepository,
+            MatchmakingConfig config,
+            Clock clock,
+            PipelineListener listener) {
         this.queueService = queueService;
         this.roleAssignmentService = roleAssignmentService;
         this.teamBalancerService = teamBalancerService;
         this.mmrWindowFinder = mmrWindowFinder;
         this.matchRepository = matchRepository;
         this.config = config;
+        this.toleranceCalculator = new MmrToleranceCalculator(config);
         this.clock = clock;
+        this.listener = listener;
     }
 
     public MatchResult tryCreateMatch() {
-        List<QueueEntry> allEntries = queueService.getAllEntries();
+        MatchResult result = null;
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            result = searchBestWindowMatch();
+            if (result.isFailure()) {
+                return result;
+            }
+
+            // Another matcher may have taken some of these players since the search
+            result = claimAndSave(result.match());
+            if (result.isSuccess()) {
+                return result;
+            }
+        }
+        return result;
+    }
 
-        if (allEntries.size() < config.getPlayersPerMatch()) {
+    private MatchResult searchBestWindowMatch() {
+        int queueSize = queueService.getQueueSize();
+
+        if (queueSize < config.getPlayersPerMatch()) {
             return MatchResult.fail("Not enough players in queue. Need " +
-                    config.getPlayersPerMatch() + ", have " + allEntries.size());
+                    config.getPlayersPerMatch() + ", have " + queueSize);
         }
 
-        // Find best window of 10 players
+        // Find best window of 10 players, scanning the queue in MMR order
         Optional<MmrWindowFinder.WindowResult> windowOpt =
-                mmrWindowFinder.findBestWindow(allEntries, config.getPlayersPerMatch());
+                queueService.findBestWindow(mmrWindowFinder, config.getPlayersPerMatch(), listener);
+
+        if (windowOpt.isEmpty()) {
+            return MatchResult.fail("Could not find suitable player window");
+        }
+
+        MmrWindowFinder.WindowResult window = windowOpt.get();
+        recordWindowCounts(window.windowsEvaluated(), window.windowsRejected());
+        return buildMatch(window, Instant.now(clock));
+    }
+
+    /**
+     * Builds a match around the longest-waiting player. Only the MMR buckets inside that
+     * player's current tolerance are searched, and the tolerance widens with wait time,
+     * so outliers are eventually matched instead of starving behind the densest window.
+     */
+    public MatchResult tryCreateAnchoredMatch() {
+        MatchResult result = null;
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            result = searchAnchoredMatch();
+            if (result.isFailure()) {
+                return result;
+            }
+
+            result = claimAndSave(result.match());
+            if (result.isSuccess()) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private MatchResult searchAnchoredMatch() {
+        int windowSize = config.getPlayersPerMatch();
+        int queueSize = queueService.getQueueSize();
+
+        if (queueSize < windowSize) {
+            return MatchResult.fail("Not enough players in queue. Need " +
+                    windowSize + ", have " + queueSize);
+        }
+
+        Optional<QueueEntry> anchorOpt = queueService.getLongestWaiting();
+        if (anchorOpt.isEmpty()) {
+            return MatchResult.fail("Could not find suitable player window");
+        }
+
+        QueueEntry anchor = anchorOpt.get();
+        Instant now = Instant.now(clock);
+        int anchorMmr = anchor.player().mmr();
+        int tolerance = toleranceCalculator.calculate(anchor.queueStartTime(), now);
+
+        long start = System.nanoTime();
+        List<QueueEntry> candidates = new ArrayList<>(
+                queueService.getEntriesInMmrRange(anchorMmr - tolerance, anchorMmr + tolerance));
+        listener.stageCompleted(Stage.SNAPSHOT, System.nanoTime() - start);
+        listener.candidatesScanned(candidates.size());
+        if (candidates.size() < windowSize) {
+            return MatchResult.fail("Not enough players within " + tolerance + " MMR of anchor " +
+                    anchor.getPlayerId() + ". Need " + windowSize + ", have " + candidates.size());
+        }
+        start = System.nanoTime();
+        candidates.sort(Comparator.comparingInt(e -> e.player().mmr()));
+
+        int anchorIndex = indexOf(candidates, anchor.getPlayerId());
+        if (anchorIndex < 0) {
+            return MatchResult.fail("Could not find suitable player window");
+        }
+
+        // Every window of this slice contains the anchor. There are at most windowSize of them,
+        // so each is scored with its real role assignment penalty (memoized by role signature)
+        List<QueueEntry> aroundAnchor = candidates.subList(
+                Math.max(0, anchorIndex - windowSize + 1),
+                Math.min(candidates.size(), anchorIndex + windowSize));
+        Optional<MmrWindowFinder.WindowResult> windowOpt = mmrWindowFinder.findBestWindowByRolePenalty(
+                aroundAnchor, windowSize, roleAssignmentService::assignmentPenalty);
+        listener.stageCompleted(Stage.WINDOW_SEARCH, System.nanoTime() - start);
 
         if (windowOpt.isEmpty()) {
             return MatchResult.fail("Could not find suitable player window");
         }
 
         MmrWindowFinder.WindowResult window = windowOpt.get();
+        recordWindowCounts(window.windowsEvaluated(), window.windowsRejected());
+        return buildMatch(window, now);
+    }
+
+    /**
+     * Creates up to {@code maxMatches} matches from a single MMR-ordered snapshot of the queue.
+     * Windows are scored once and packed without overlap, best first; windows that fail role
+     * assignment or balancing are skipped and their players stay queued. Windows are read only
+     * until {@code maxMatches} matches are built, so a packed queue materializes just those
+     * players. Each match is then claimed atomically before it is saved; a match whose players
+     * were taken concurrently is dropped.
+     */
+    public List<Match> createMatches(int maxMatches) {
+        if (maxMatches <= 0) {
+            return List.of();
+        }
+
+        Instant now = Instant.now(clock);
+        List<Match> built = queueService.findDisjointWindows(mmrWindowFinder, config.getPlayersPerMatch(), listener,
+                windows -> {
+                    recordWindowCounts(windows.windowsEvaluated(), windows.windowsRejected());
+                    List<Match> selected = new ArrayList<>();
+                    for (MmrWindowFinder.WindowResult window : windows.windows()) {
+                        buildMatch(window, now).getMatch().ifPresent(selected::add);
+                        if (selected.size() >= maxMatches) {
+                            break;
+                        }
+                    }
+                    return selected;
+                });
+
+        List<Match> matches = new ArrayList<>(built.size());
+        for (Match match : built) {
+            if (claimAndSave(match).isSuccess()) {
+                matches.add(match);
+            }
+        }
+        return matches;
+    }
+
+    private void recordWindowCounts(int evaluated, int rejected) {
+        listener.windowsEvaluated(evaluated);
+        listener.windowsRejected(rejected);
+    }
+
+    private MatchResult claimAndSave(Match match) {
+        long start = System.nanoTime();
+        ClaimResult claim = queueService.claimAll(match.playerIds());
+        listener.stageCompleted(Stage.REMOVAL, System.nanoTime() - start);
+        if (!claim.isClaimed()) {
+            return MatchResult.fail("Players no longer in queue: " + claim.missingPlayerIds());
+        }
+        start = System.nanoTime();
+        matchRepository.save(match);
+        listener.stageCompleted(Stage.PERSISTENCE, System.nanoTime() - start);
+        return MatchResult.ok(match);
+    }
+
+    private MatchResult buildMatch(MmrWindowFinder.WindowResult window, Instant createdAt) {
         List<Player> players = window.entries().stream()
                 .map(QueueEntry::player)
                 .toList();
 
         // Assign roles
+        long start = System.nanoTime();
         Optional<List<PlayerAssignment>> assignmentsOpt = roleAssignmentService.assignRoles(players);
+        listener.stageCompleted(Stage.ROLE_ASSIGNMENT, System.nanoTime() - start);
 
         if (assignmentsOpt.isEmpty()) {
             return MatchResult.fail("Could not assign roles to players");
         }
 
-        List<PlayerAssignment> assignments = assignmentsOpt.get();
+        List<PlayerAssignment> assignments = withQueueStartTimes(assignmentsOpt.get(), window.entries());
 
         // Balance teams
+        start = System.nanoTime();
         TeamBalancerService.TeamBalanceResult teamResult = teamBalancerService.balanceTeams(assignments);
+        listener.stageCompleted(Stage.BALANCING, System.nanoTime() - start);
 
         // Check MMR difference threshold
         if (teamResult.mmrDifference() > config.getMaxMmrDiff()) {
+            listener.windowUnbalanced();
             return MatchResult.fail("MMR difference too high: " + teamResult.mmrDifference() +
                     " (max: " + config.getMaxMmrDiff() + ")");
         }
 
-        // Create match
-        Match match = Match.create(teamResult.team1(), teamResult.team2(), Instant.now(clock));
-        matchRepository.save(match);
+        return MatchResult.ok(Match.create(teamResult.team1(), teamResult.team2(), createdAt));
+    }
 
-        // Remove players from queue
-        List<String> playerIds = players.stream()
-                .map(Player::id)
-                .toList();
-        queueService.removeAll(playerIds);
+    // Carries each player's enqueue time into the match, so wait time can be measured from it
+    private List<PlayerAssignment> withQueueStartTimes(List<PlayerAssignment> assignments, List<QueueEntry> entries) {
+        List<PlayerAssignment> result = new ArrayList<>(assignments.size());
+        for (PlayerAssignment assignment : assignments) {
+            int index = indexOf(entries, assignment.player().id());
+            result.add(index < 0 ? assignment : assignment.withQueueStartTime(entries.get(index).queueStartTime()));
+        }
+        return result;
+    }
 
-        return MatchResult.ok(match);
+    private int indexOf(List<QueueEntry> entries, String playerId) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).getPlayerId().equals(playerId)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public int getQueueSize() {
@@ -1,13 +1,23 @@
 package com.matchmaking.service;
 
+import com.matchmaking.algorithm.MmrWindowFinder;
+import com.matchmaking.metrics.PipelineListener;
+import com.matchmaking.metrics.PipelineListener.Stage;
+import com.matchmaking.model.ClaimResult;
 import com.matchmaking.model.Player;
 import com.matchmaking.model.QueueEntry;
+import com.matchmaking.repository.PackedSlots;
 import com.matchmaking.repository.QueueRepository;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 public class QueueService {
     private final QueueRepository queueRepository;
@@ -23,15 +33,28 @@ public class QueueService {
     }
 
     public QueueEntry enqueue(Player player) {
-        if (queueRepository.contains(player.id())) {
+        QueueEntry entry = QueueEntry.create(player, Instant.now(clock));
+        if (!queueRepository.addIfAbsent(entry)) {
             throw new IllegalStateException("Player " + player.id() + " is already in queue");
         }
-
-        QueueEntry entry = QueueEntry.create(player, Instant.now(clock));
-        queueRepository.add(entry);
         return entry;
     }
 
+    /**
+     * Enqueues all players with one repository batch write and returns the entries that
+     * were added, in input order. Players already queued (or repeated in the batch) are skipped.
+     */
+    public List<QueueEntry> enqueueAll(List<Player> players) {
+        Instant now = Instant.now(clock);
+        List<QueueEntry> entries = players.stream()
+                .map(player -> QueueEntry.create(player, now))
+                .toList();
+        Set<String> added = new HashSet<>(queueRepository.addAllIfAbsent(entries));
+        return entries.stream()
+                .filter(entry -> added.remove(entry.getPlayerId()))
+                .toList();
+    }
+
     public boolean dequeue(String playerId) {
         return queueRepository.remove(playerId);
     }
@@ -48,13 +71,83 @@ public class QueueService {
         return queueRepository.findAll();
     }
 
+    /**
+     * Best MMR window of the whole queue. A repository with {@link PackedSlots} is scanned
+     * over its primitive slot arrays, materializing only the selected entries. Reports the
+     * snapshot stage, getting an MMR-ordered view of the queue (the read lock for packed
+     * slots, the index view or a sorted copy otherwise), the window search and the number
+     * of candidates scanned to {@code listener}.
+     */
+    public Optional<MmrWindowFinder.WindowResult> findBestWindow(MmrWindowFinder finder, int windowSize,
+                                                                 PipelineListener listener) {
+        long start = System.nanoTime();
+        if (queueRepository instanceof PackedSlots packed) {
+            return packed.readSlots((mmr, packedRoles, size, materializer) -> {
+                long locked = System.nanoTime();
+                listener.stageCompleted(Stage.SNAPSHOT, locked - start);
+                Optional<MmrWindowFinder.WindowResult> window =
+                        finder.findBestWindow(mmr, packedRoles, size, windowSize, materializer);
+                listener.stageCompleted(Stage.WINDOW_SEARCH, System.nanoTime() - locked);
+                listener.candidatesScanned(size);
+                return window;
+            });
+        }
+        Collection<QueueEntry> byMmr = queueRepository.findAllOrderedByMmr();
+        long snapshotted = System.nanoTime();
+        listener.stageCompleted(Stage.SNAPSHOT, snapshotted - start);
+        Optional<MmrWindowFinder.WindowResult> window = finder.findBestWindowInMmrOrder(byMmr, windowSize);
+        listener.stageCompleted(Stage.WINDOW_SEARCH, System.nanoTime() - snapshotted);
+        listener.candidatesScanned(queueRepository.size());
+        return window;
+    }
+
+    /**
+     * Packs the whole queue into non-overlapping MMR windows and hands them, best first, to
+     * {@code selector}, returning what it selected. Over {@link PackedSlots} the selector runs
+     * under the repository's read lock and a window is materialized only when the selector reads
+     * it, so the selector must not write to the queue; claim the selected players afterwards.
+     * Reports stages and candidates like {@link #findBestWindow}.
+     */
+    public <T> T findDisjointWindows(MmrWindowFinder finder, int windowSize, PipelineListener listener,
+                                     Function<MmrWindowFinder.DisjointWindows, T> selector) {
+        long start = System.nanoTime();
+        if (queueRepository instanceof PackedSlots packed) {
+            return packed.readSlots((mmr, packedRoles, size, materializer) -> {
+                long locked = System.nanoTime();
+                listener.stageCompleted(Stage.SNAPSHOT, locked - start);
+                MmrWindowFinder.DisjointWindows windows =
+                        finder.findDisjointWindows(mmr, packedRoles, size, windowSize, materializer);
+                listener.stageCompleted(Stage.WINDOW_SEARCH, System.nanoTime() - locked);
+                listener.candidatesScanned(size);
+                return selector.apply(windows);
+            });
+        }
+        List<QueueEntry> snapshot = new ArrayList<>(queueRepository.findAllOrderedByMmr());
+        long snapshotted = System.nanoTime();
+        listener.stageCompleted(Stage.SNAPSHOT, snapshotted - start);
+        MmrWindowFinder.DisjointWindows windows = finder.findDisjointWindows(snapshot, windowSize);
+        listener.stageCompleted(Stage.WINDOW_SEARCH, System.nanoTime() - snapshotted);
+        listener.candidatesScanned(snapshot.size());
+        return selector.apply(windows);
+    }
+
+    public Optional<QueueEntry> getLongestWaiting() {
+        return queueRepository.findLongestWaiting();
+    }
+
+    public List<QueueEntry> getEntriesInMmrRange(int minMmr, int maxMmr) {
+        return queueRepository.findByMmrRange(minMmr, maxMmr);
+    }
+
     public boolean isInQueue(String playerId) {
         return queueRepository.contains(playerId);
     }
 
-    public void removeAll(List<String> playerIds) {
-        for (String playerId : playerIds) {
-            queueRepository.remove(playerId);
-        }
+    public ClaimResult claimAll(List<String> playerIds) {
+        return queueRepository.claimAll(playerIds);
+    }
+
+    public List<String> removeAll(List<String> playerIds) {
+        return queueRepository.removeAll(playerIds);
     }
 }
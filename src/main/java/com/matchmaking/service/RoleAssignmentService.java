@@ -1,95 +1,155 @@
 package com.matchmaking.service;
 
+import com.matchmaking.algorithm.EffectiveMmrCalculator;
+import com.matchmaking.algorithm.HungarianAlgorithm;
 import com.matchmaking.model.AssignmentType;
 import com.matchmaking.model.Player;
 import com.matchmaking.model.PlayerAssignment;
 import com.matchmaking.model.Role;
 
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optimal role assignment as a 10 player x 10 slot min-cost problem (2 slots per role).
+ * Slot cost is the assignment type's MMR penalty; a small tie-break term steers PRIMARY
+ * and SECONDARY roles towards higher-MMR players when penalties are otherwise equal.
+ * <p>
+ * The optimum only depends on each player's (primary, secondary) pair in MMR order, so
+ * solved slot patterns are memoized by that signature and repeat windows are a lookup.
+ * That makes {@link #assignmentPenalty} cheap enough for the anchored search to score
+ * every candidate window by its real role assignment.
+ */
 public class RoleAssignmentService {
     private static final int PLAYERS_PER_ROLE = 2;
+    private static final Role[] ROLES = Role.values();
+    private static final int SLOTS = ROLES.length * PLAYERS_PER_ROLE;
+
+    // Smallest penalty step (50) times this scale outweighs any sum of tie-break terms
+    private static final int PENALTY_SCALE = 1000;
+
+    private static final int PAIR_BITS = 5;
+    private static final int ROLE_BITS = 3;
+    private static final int ROLE_MASK = (1 << ROLE_BITS) - 1;
+    private static final int DEFAULT_MAX_CACHED_SIGNATURES = 65_536;
+
+    private final EffectiveMmrCalculator effectiveMmrCalculator = new EffectiveMmrCalculator();
+    private final ThreadLocal<HungarianAlgorithm> solvers =
+            ThreadLocal.withInitial(() -> new HungarianAlgorithm(SLOTS));
+
+    // Signature -> assigned role ordinal per MMR rank, ROLE_BITS each
+    private final Map<Long, Integer> slotPatterns = new ConcurrentHashMap<>();
+    private final int maxCachedSignatures;
+
+    public RoleAssignmentService() {
+        this(DEFAULT_MAX_CACHED_SIGNATURES);
+    }
+
+    public RoleAssignmentService(int maxCachedSignatures) {
+        this.maxCachedSignatures = maxCachedSignatures;
+    }
 
     public Optional<List<PlayerAssignment>> assignRoles(List<Player> players) {
-        if (players.size() != 10) {
+        if (players.size() != SLOTS) {
             return Optional.empty();
         }
 
-        Map<Role, List<PlayerAssignment>> roleAssignments = new EnumMap<>(Role.class);
-        for (Role role : Role.values()) {
-            roleAssignments.put(role, new ArrayList<>());
-        }
+        Player[] byMmr = sortByMmr(players);
+        int pattern = slotPattern(byMmr);
 
-        Set<Player> unassigned = new HashSet<>(players);
-        List<PlayerAssignment> assignments = new ArrayList<>();
+        List<PlayerAssignment> assignments = new ArrayList<>(SLOTS);
+        for (int rank = 0; rank < SLOTS; rank++) {
+            Player player = byMmr[rank];
+            Role role = roleAt(pattern, rank);
+            AssignmentType type = effectiveMmrCalculator.determineAssignmentType(player, role);
+            assignments.add(PlayerAssignment.create(player, role, type));
+        }
 
-        // Pass 1: Assign PRIMARY roles
-        assignByPreference(unassigned, roleAssignments, assignments, AssignmentType.PRIMARY,
-                Player::primaryRole);
+        return Optional.of(assignments);
+    }
 
-        // Pass 2: Assign SECONDARY roles
-        assignByPreference(unassigned, roleAssignments, assignments, AssignmentType.SECONDARY,
-                Player::secondaryRole);
+    /**
+     * Total MMR penalty of the optimal assignment for these 10 players, or -1 if the
+     * roster is not exactly 10. Cheap enough to score many candidate windows.
+     */
+    public int assignmentPenalty(List<Player> players) {
+        if (players.size() != SLOTS) {
+            return -1;
+        }
 
-        // Pass 3: AUTOFILL remaining players
-        assignAutofill(unassigned, roleAssignments, assignments);
+        Player[] byMmr = sortByMmr(players);
+        int pattern = slotPattern(byMmr);
 
-        // Validate: each role must have exactly 2 players
-        for (Role role : Role.values()) {
-            if (roleAssignments.get(role).size() != PLAYERS_PER_ROLE) {
-                return Optional.empty();
-            }
+        int penalty = 0;
+        for (int rank = 0; rank < SLOTS; rank++) {
+            penalty += effectiveMmrCalculator.determineAssignmentType(byMmr[rank], roleAt(pattern, rank)).getMmrPenalty();
         }
+        return penalty;
+    }
 
-        return Optional.of(assignments);
+    int cachedSignatureCount() {
+        return slotPatterns.size();
     }
 
-    private void assignByPreference(
-            Set<Player> unassigned,
-            Map<Role, List<PlayerAssignment>> roleAssignments,
-            List<PlayerAssignment> assignments,
-            AssignmentType type,
-            java.util.function.Function<Player, Role> roleExtractor) {
+    private int slotPattern(Player[] byMmr) {
+        long signature = signatureOf(byMmr);
+        Integer cached = slotPatterns.get(signature);
+        if (cached != null) {
+            return cached;
+        }
 
-        List<Player> toAssign = new ArrayList<>(unassigned);
-        toAssign.sort(Comparator.comparingInt(Player::mmr).reversed());
+        int pattern = solve(byMmr);
+        // Bounded: once full, new signatures are solved but not cached
+        if (slotPatterns.size() < maxCachedSignatures) {
+            slotPatterns.putIfAbsent(signature, pattern);
+        }
+        return pattern;
+    }
 
-        for (Player player : toAssign) {
-            if (!unassigned.contains(player)) {
-                continue;
+    private int solve(Player[] byMmr) {
+        HungarianAlgorithm solver = solvers.get();
+        int[][] cost = solver.costMatrix();
+        for (int rank = 0; rank < SLOTS; rank++) {
+            // Row index doubles as the tie-break rank
+            int tieBreakWeight = SLOTS - rank;
+            for (int slot = 0; slot < SLOTS; slot++) {
+                AssignmentType type = effectiveMmrCalculator.determineAssignmentType(byMmr[rank], roleOf(slot));
+                cost[rank][slot] = type.getMmrPenalty() * PENALTY_SCALE + type.ordinal() * tieBreakWeight;
             }
+        }
+        solver.solve();
 
-            Role preferredRole = roleExtractor.apply(player);
-            List<PlayerAssignment> roleList = roleAssignments.get(preferredRole);
-
-            if (roleList.size() < PLAYERS_PER_ROLE) {
-                PlayerAssignment assignment = PlayerAssignment.create(player, preferredRole, type);
-                roleList.add(assignment);
-                assignments.add(assignment);
-                unassigned.remove(player);
-            }
+        int pattern = 0;
+        for (int rank = 0; rank < SLOTS; rank++) {
+            pattern |= roleOf(solver.assignedColumn(rank)).ordinal() << (rank * ROLE_BITS);
         }
+        return pattern;
     }
 
-    private void assignAutofill(
-            Set<Player> unassigned,
-            Map<Role, List<PlayerAssignment>> roleAssignments,
-            List<PlayerAssignment> assignments) {
-
-        List<Player> remaining = new ArrayList<>(unassigned);
-        remaining.sort(Comparator.comparingInt(Player::mmr).reversed());
-
-        for (Player player : remaining) {
-            for (Role role : Role.values()) {
-                List<PlayerAssignment> roleList = roleAssignments.get(role);
-                if (roleList.size() < PLAYERS_PER_ROLE) {
-                    PlayerAssignment assignment = PlayerAssignment.create(player, role, AssignmentType.AUTOFILL);
-                    roleList.add(assignment);
-                    assignments.add(assignment);
-                    unassigned.remove(player);
-                    break;
-                }
-            }
+    /**
+     * (primary, secondary) pair code of each player in MMR order, PAIR_BITS each
+     */
+    private static long signatureOf(Player[] byMmr) {
+        long signature = 0;
+        for (int rank = 0; rank < SLOTS; rank++) {
+            Player player = byMmr[rank];
+            long pair = player.primaryRole().ordinal() * ROLES.length + player.secondaryRole().ordinal();
+            signature |= pair << (rank * PAIR_BITS);
         }
+        return signature;
+    }
+
+    private static Player[] sortByMmr(List<Player> players) {
+        Player[] byMmr = players.toArray(new Player[0]);
+        Arrays.sort(byMmr, Comparator.comparingInt(Player::mmr).reversed());
+        return byMmr;
+    }
+
+    private static Role roleAt(int pattern, int rank) {
+        return ROLES[pattern >>> (rank * ROLE_BITS) & ROLE_MASK];
+    }
+
+    private static Role roleOf(int slot) {
+        return ROLES[slot / PLAYERS_PER_ROLE];
     }
 }
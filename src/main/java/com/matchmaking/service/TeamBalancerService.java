@@ -6,7 +6,16 @@ import com.matchmaking.model.Team;
 
 import java.util.*;
 
+/**
+ * Exact team balancing. With two players per role a split is one bit per role
+ * (which of the pair goes to team 1); fixing the first role's bit by symmetry
+ * leaves 16 splits, walked in Gray-code order so each step swaps one role and
+ * updates the team sum by a single delta.
+ */
 public class TeamBalancerService {
+    private static final Role[] ROLES = Role.values();
+    private static final int TEAM_SIZE = ROLES.length;
+    private static final int SPLITS = 1 << (TEAM_SIZE - 1);
 
     public record TeamBalanceResult(
             Team team1,
@@ -15,63 +24,61 @@ public class TeamBalancerService {
     ) {}
 
     public TeamBalanceResult balanceTeams(List<PlayerAssignment> assignments) {
-        if (assignments.size() != 10) {
+        if (assignments.size() != TEAM_SIZE * 2) {
             throw new IllegalArgumentException("Must have exactly 10 players");
         }
 
-        // Group by role
-        Map<Role, List<PlayerAssignment>> byRole = new EnumMap<>(Role.class);
+        // Pair per role, indexed by role ordinal
+        PlayerAssignment[] first = new PlayerAssignment[TEAM_SIZE];
+        PlayerAssignment[] second = new PlayerAssignment[TEAM_SIZE];
         for (PlayerAssignment assignment : assignments) {
-            byRole.computeIfAbsent(assignment.assignedRole(), k -> new ArrayList<>())
-                    .add(assignment);
-        }
-
-        // Validate each role has exactly 2 players
-        for (Role role : Role.values()) {
-            List<PlayerAssignment> roleAssignments = byRole.get(role);
-            if (roleAssignments == null || roleAssignments.size() != 2) {
+            int role = assignment.assignedRole().ordinal();
+            if (first[role] == null) {
+                first[role] = assignment;
+            } else if (second[role] == null) {
+                second[role] = assignment;
+            } else {
                 throw new IllegalArgumentException("Each role must have exactly 2 players");
             }
         }
 
-        // Snake draft by effective MMR for each role
-        List<PlayerAssignment> team1Assignments = new ArrayList<>();
-        List<PlayerAssignment> team2Assignments = new ArrayList<>();
-
-        // Sort roles by the MMR difference between their two players (descending)
-        // This helps balance by assigning most impactful roles first
-        List<Role> sortedRoles = new ArrayList<>(Arrays.asList(Role.values()));
-        sortedRoles.sort((r1, r2) -> {
-            int diff1 = getMmrDiff(byRole.get(r1));
-            int diff2 = getMmrDiff(byRole.get(r2));
-            return Integer.compare(diff2, diff1);
-        });
-
+        // Swapping role r's pair moves delta[r] into team 1
+        int[] delta = new int[TEAM_SIZE];
         int team1Total = 0;
-        int team2Total = 0;
-
-        for (Role role : sortedRoles) {
-            List<PlayerAssignment> rolePlayers = byRole.get(role);
-            // Sort by effective MMR descending
-            rolePlayers.sort(Comparator.comparingInt(PlayerAssignment::effectiveMmr).reversed());
-
-            PlayerAssignment higher = rolePlayers.get(0);
-            PlayerAssignment lower = rolePlayers.get(1);
+        int total = 0;
+        for (int role = 0; role < TEAM_SIZE; role++) {
+            if (second[role] == null) {
+                throw new IllegalArgumentException("Each role must have exactly 2 players");
+            }
+            team1Total += first[role].effectiveMmr();
+            total += first[role].effectiveMmr() + second[role].effectiveMmr();
+            delta[role] = second[role].effectiveMmr() - first[role].effectiveMmr();
+        }
 
-            // Assign higher MMR player to team with lower total
-            if (team1Total <= team2Total) {
-                team1Assignments.add(higher);
-                team2Assignments.add(lower);
-                team1Total += higher.effectiveMmr();
-                team2Total += lower.effectiveMmr();
-            } else {
-                team1Assignments.add(lower);
-                team2Assignments.add(higher);
-                team1Total += lower.effectiveMmr();
-                team2Total += higher.effectiveMmr();
+        int swapped = 0;
+        int bestSwapped = 0;
+        int bestDiff = averageDiff(team1Total, total - team1Total);
+        for (int step = 1; step < SPLITS && bestDiff > 0; step++) {
+            // Gray code: step k flips the bit at k's lowest set bit; role 0 stays fixed
+            int role = Integer.numberOfTrailingZeros(step) + 1;
+            swapped ^= 1 << role;
+            team1Total += (swapped & (1 << role)) != 0 ? delta[role] : -delta[role];
+
+            int diff = averageDiff(team1Total, total - team1Total);
+            if (diff < bestDiff) {
+                bestDiff = diff;
+                bestSwapped = swapped;
             }
         }
 
+        List<PlayerAssignment> team1Assignments = new ArrayList<>(TEAM_SIZE);
+        List<PlayerAssignment> team2Assignments = new ArrayList<>(TEAM_SIZE);
+        for (int role = 0; role < TEAM_SIZE; role++) {
+            boolean swap = (bestSwapped & (1 << role)) != 0;
+            team1Assignments.add(swap ? second[role] : first[role]);
+            team2Assignments.add(swap ? first[role] : second[role]);
+        }
+
         Team team1 = Team.create(team1Assignments);
         Team team2 = Team.create(team2Assignments);
         int mmrDiff = Math.abs(team1.avgEffectiveMmr() - team2.avgEffectiveMmr());
@@ -79,8 +86,10 @@ public class TeamBalancerService {
         return new TeamBalanceResult(team1, team2, mmrDiff);
     }
 
-    private int getMmrDiff(List<PlayerAssignment> players) {
-        if (players.size() != 2) return 0;
-        return Math.abs(players.get(0).effectiveMmr() - players.get(1).effectiveMmr());
+    /**
+     * Same integer averaging as {@link Team#create}
+     */
+    private static int averageDiff(int team1Total, int team2Total) {
+        return Math.abs(team1Total / TEAM_SIZE - team2Total / TEAM_SIZE);
     }
 }
@@ -0,0 +1,77 @@
+package com.matchmaking.algorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+class HungarianAlgorithmTest {
+
+    @Test
+    void solve_findsMinimumCostAssignment() {
+        HungarianAlgorithm solver = new HungarianAlgorithm(3);
+        fill(solver, new int[][]{
+                {4, 1, 3},
+                {2, 0, 5},
+                {3, 2, 2}
+        });
+
+        int total = solver.solve();
+
+        assertThat(total).isEqualTo(5);
+        assertThat(solver.assignedColumn(0)).isEqualTo(1);
+        assertThat(solver.assignedColumn(1)).isEqualTo(0);
+        assertThat(solver.assignedColumn(2)).isEqualTo(2);
+    }
+
+    @Test
+    void solve_matchesBruteForce_whenReusedAcrossMatrices() {
+        Random random = new Random(42);
+        HungarianAlgorithm solver = new HungarianAlgorithm(6);
+
+        for (int round = 0; round < 200; round++) {
+            int[][] cost = new int[6][6];
+            for (int[] row : cost) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = random.nextInt(3) * 50;
+                }
+            }
+            fill(solver, cost);
+
+            int total = solver.solve();
+
+            assertThat(total).isEqualTo(bruteForce(cost, 0, new boolean[6]));
+            boolean[] columnUsed = new boolean[6];
+            int assignedTotal = 0;
+            for (int row = 0; row < 6; row++) {
+                int column = solver.assignedColumn(row);
+                assertThat(columnUsed[column]).isFalse();
+                columnUsed[column] = true;
+                assignedTotal += cost[row][column];
+            }
+            assertThat(assignedTotal).isEqualTo(total);
+        }
+    }
+
+    private void fill(HungarianAlgorithm solver, int[][] cost) {
+        for (int row = 0; row < cost.length; row++) {
+            System.arraycopy(cost[row], 0, solver.costMatrix()[row], 0, cost[row].length);
+        }
+    }
+
+    private int bruteForce(int[][] cost, int row, boolean[] used) {
+        if (row == cost.length) {
+            return 0;
+        }
+        int best = Integer.MAX_VALUE;
+        for (int column = 0; column < cost.length; column++) {
+            if (!used[column]) {
+                used[column] = true;
+                best = Math.min(best, cost[row][column] + bruteForce(cost, row + 1, used));
+                used[column] = false;
+            }
+        }
+        return best;
+    }
+}
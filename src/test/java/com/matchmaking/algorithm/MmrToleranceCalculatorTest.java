@@ -0,0 +1,60 @@
+package com.matchmaking.algorithm;
+
+import com.matchmaking.config.MatchmakingConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MmrToleranceCalculatorTest {
+    private MmrToleranceCalculator calculator;
+
+    @BeforeEach
+    void setUp() {
+        calculator = new MmrToleranceCalculator(new MatchmakingConfig());
+    }
+
+    @Test
+    void calculate_usesBaseWindow_duringFirstMinute() {
+        assertThat(calculator.calculate(Duration.ZERO)).isEqualTo(100);
+        assertThat(calculator.calculate(Duration.ofSeconds(59))).isEqualTo(100);
+    }
+
+    @Test
+    void calculate_followsSpecStepTable() {
+        assertThat(calculator.calculate(Duration.ofSeconds(60))).isEqualTo(150);
+        assertThat(calculator.calculate(Duration.ofSeconds(150))).isEqualTo(200);
+        assertThat(calculator.calculate(Duration.ofSeconds(179))).isEqualTo(200);
+        assertThat(calculator.calculate(Duration.ofSeconds(180))).isEqualTo(300);
+        assertThat(calculator.calculate(Duration.ofSeconds(239))).isEqualTo(300);
+        assertThat(calculator.calculate(Duration.ofSeconds(299))).isEqualTo(300);
+    }
+
+    @Test
+    void calculate_growsLinearly_whenNoStepsConfigured() {
+        MatchmakingConfig config = new MatchmakingConfig();
+        config.setWindowSteps(List.of());
+        MmrToleranceCalculator linear = new MmrToleranceCalculator(config);
+
+        assertThat(linear.calculate(Duration.ofSeconds(180))).isEqualTo(250);
+        assertThat(linear.calculate(Duration.ofSeconds(240))).isEqualTo(300);
+    }
+
+    @Test
+    void calculate_usesMaxWindow_afterDesperationThreshold() {
+        assertThat(calculator.calculate(Duration.ofMinutes(5))).isEqualTo(500);
+        assertThat(calculator.calculate(Duration.ofHours(1))).isEqualTo(500);
+    }
+
+    @Test
+    void calculate_fromInstants_treatsFutureStartAsNoWait() {
+        Instant now = Instant.parse("2024-01-01T12:00:00Z");
+
+        assertThat(calculator.calculate(now.plusSeconds(30), now)).isEqualTo(100);
+        assertThat(calculator.calculate(now.minusSeconds(130), now)).isEqualTo(200);
+    }
+}
@@ -8,8 +8,12 @@ import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -78,6 +82,189 @@ class MmrWindowFinderTest {
         assertThat(mmrs).containsExactly(1000, 1200, 1500);
     }
 
+    @Test
+    void findBestWindowInMmrOrder_matchesFindBestWindow() {
+        List<QueueEntry> entries = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            entries.add(createEntry("p" + i, 1000 + random.nextInt(1000)));
+        }
+        List<QueueEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingInt(e -> e.player().mmr()));
+
+        MmrWindowFinder.WindowResult expected = windowFinder.findBestWindow(entries, 10).orElseThrow();
+        MmrWindowFinder.WindowResult actual = windowFinder.findBestWindowInMmrOrder(sorted, 10).orElseThrow();
+
+        assertThat(actual.mmrSpread()).isEqualTo(expected.mmrSpread());
+        assertThat(actual.roleCoverageScore()).isEqualTo(expected.roleCoverageScore());
+        assertThat(actual.entries()).hasSize(10);
+    }
+
+    @Test
+    void findBestWindowByRolePenalty_addsPenaltyToSpread() {
+        List<QueueEntry> sorted = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sorted.add(createEntry("p" + i, 1000 + i * 10));
+        }
+
+        // Without a penalty the tightest window (p0..p2, spread 20) wins
+        MmrWindowFinder.WindowResult plain =
+                windowFinder.findBestWindowByRolePenalty(sorted, 3, players -> 0).orElseThrow();
+        assertThat(plain.entries()).extracting(QueueEntry::getPlayerId).containsExactly("p0", "p1", "p2");
+
+        // A role penalty on every window holding p0 moves the pick one step up
+        MmrWindowFinder.WindowResult penalized = windowFinder.findBestWindowByRolePenalty(sorted, 3,
+                players -> players.stream().anyMatch(p -> p.id().equals("p0")) ? 100 : 0).orElseThrow();
+        assertThat(penalized.entries()).extracting(QueueEntry::getPlayerId).containsExactly("p1", "p2", "p3");
+        assertThat(penalized.mmrSpread()).isEqualTo(20);
+    }
+
+    @Test
+    void findBestWindowByRolePenalty_rejectsWindowsWithoutValidAssignment() {
+        List<QueueEntry> sorted = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sorted.add(createEntry("p" + i, 1000 + i * 10));
+        }
+
+        MmrWindowFinder.WindowResult result = windowFinder.findBestWindowByRolePenalty(sorted, 3,
+                players -> players.stream().anyMatch(p -> p.id().equals("p4")) ? 0 : -1).orElseThrow();
+
+        assertThat(result.entries()).extracting(QueueEntry::getPlayerId).containsExactly("p2", "p3", "p4");
+        assertThat(result.windowsEvaluated()).isEqualTo(3);
+        assertThat(result.windowsRejected()).isEqualTo(2);
+        assertThat(windowFinder.findBestWindowByRolePenalty(sorted, 3, players -> -1)).isEmpty();
+    }
+
+    @Test
+    void findBestWindow_countsEveryScoredWindow() {
+        List<QueueEntry> entries = createEntries(25);
+
+        MmrWindowFinder.WindowResult sorted = windowFinder.findBestWindow(entries, 10).orElseThrow();
+        MmrWindowFinder.WindowResult inOrder = windowFinder.findBestWindowInMmrOrder(
+                entries.stream().sorted(Comparator.comparingInt(e -> e.player().mmr())).toList(), 10).orElseThrow();
+
+        assertThat(sorted.windowsEvaluated()).isEqualTo(16);
+        assertThat(sorted.windowsRejected()).isEqualTo(15);
+        assertThat(inOrder.windowsEvaluated()).isEqualTo(16);
+        assertThat(inOrder.windowsRejected()).isEqualTo(15);
+    }
+
+    @Test
+    void findBestWindowByRolePenalty_returnsEmpty_whenNotEnoughPlayers() {
+        assertThat(windowFinder.findBestWindowByRolePenalty(createEntries(5), 10, players -> 0)).isEmpty();
+    }
+
+    @Test
+    void findBestWindowInMmrOrder_returnsEmpty_whenNotEnoughPlayers() {
+        Optional<MmrWindowFinder.WindowResult> result = windowFinder.findBestWindowInMmrOrder(createEntries(5), 10);
+
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void findBestWindow_matchesPerWindowRecomputation() {
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            List<QueueEntry> entries = new ArrayList<>();
+            for (int i = 0; i < 50 + random.nextInt(100); i++) {
+                entries.add(createEntry("r" + round + "_" + i, 1200 + random.nextInt(600)));
+            }
+
+            MmrWindowFinder.WindowResult result = windowFinder.findBestWindow(entries, 10).orElseThrow();
+
+            List<QueueEntry> sorted = new ArrayList<>(entries);
+            sorted.sort(Comparator.comparingInt(e -> e.player().mmr()));
+            int bestScore = Integer.MAX_VALUE;
+            List<QueueEntry> bestWindow = null;
+            for (int i = 0; i <= sorted.size() - 10; i++) {
+                List<QueueEntry> window = sorted.subList(i, i + 10);
+                int score = spreadOf(window) + missingRolesOf(window) * 10;
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestWindow = window;
+                }
+            }
+
+            assertThat(result.entries()).containsExactlyElementsOf(bestWindow);
+            assertThat(result.mmrSpread()).isEqualTo(spreadOf(bestWindow));
+            assertThat(result.roleCoverageScore()).isEqualTo(missingRolesOf(bestWindow));
+        }
+    }
+
+    @Test
+    void findDisjointWindows_packsAsManyNonOverlappingWindowsAsPossible() {
+        List<QueueEntry> sorted = new ArrayList<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 95; i++) {
+            sorted.add(createEntry("p" + i, 1000 + random.nextInt(1000)));
+        }
+        sorted.sort(Comparator.comparingInt(e -> e.player().mmr()));
+
+        MmrWindowFinder.DisjointWindows packed = windowFinder.findDisjointWindows(sorted, 10);
+        List<MmrWindowFinder.WindowResult> windows = packed.windows();
+
+        assertThat(windows).hasSize(9);
+        assertThat(packed.windowsEvaluated()).isEqualTo(86);
+        assertThat(packed.windowsRejected()).isEqualTo(77);
+        Set<String> seen = new HashSet<>();
+        int previousScore = Integer.MIN_VALUE;
+        for (MmrWindowFinder.WindowResult window : windows) {
+            assertThat(window.entries()).hasSize(10);
+            window.entries().forEach(e -> assertThat(seen.add(e.getPlayerId())).isTrue());
+            assertThat(window.mmrSpread()).isEqualTo(spreadOf(window.entries()));
+            assertThat(window.roleCoverageScore()).isEqualTo(missingRolesOf(window.entries()));
+
+            int score = window.mmrSpread() + window.roleCoverageScore() * 10;
+            assertThat(score).isGreaterThanOrEqualTo(previousScore);
+            previousScore = score;
+        }
+    }
+
+    @Test
+    void findDisjointWindows_overSlotArrays_matchesEntryBasedPackingAndMaterializesOnRead() {
+        List<QueueEntry> sorted = new ArrayList<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 95; i++) {
+            sorted.add(createEntry("p" + i, 1000 + random.nextInt(1000)));
+        }
+        sorted.sort(Comparator.comparingInt(e -> e.player().mmr()));
+        int[] mmr = new int[sorted.size()];
+        byte[] packedRoles = new byte[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            Player player = sorted.get(i).player();
+            mmr[i] = player.mmr();
+            packedRoles[i] = Role.pack(player.primaryRole(), player.secondaryRole());
+        }
+        List<Integer> materialized = new ArrayList<>();
+
+        MmrWindowFinder.DisjointWindows slots = windowFinder.findDisjointWindows(mmr, packedRoles, sorted.size(), 10,
+                slot -> {
+                    materialized.add(slot);
+                    return sorted.get(slot);
+                });
+        MmrWindowFinder.DisjointWindows expected = windowFinder.findDisjointWindows(sorted, 10);
+
+        assertThat(materialized).isEmpty();
+        assertThat(slots.windows().get(0)).isEqualTo(expected.windows().get(0));
+        assertThat(materialized).hasSize(10);
+        assertThat(slots).isEqualTo(expected);
+    }
+
+    private int spreadOf(List<QueueEntry> window) {
+        return window.get(window.size() - 1).player().mmr() - window.get(0).player().mmr();
+    }
+
+    private int missingRolesOf(List<QueueEntry> window) {
+        int missing = 0;
+        for (Role role : Role.values()) {
+            long count = window.stream()
+                    .filter(e -> e.player().primaryRole() == role || e.player().secondaryRole() == role)
+                    .count();
+            missing += Math.max(0, 2 - (int) count);
+        }
+        return missing;
+    }
+
     private List<QueueEntry> createEntries(int count) {
         List<QueueEntry> entries = new ArrayList<>();
         Role[] roles = Role.values();
@@ -0,0 +1,77 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.Player;
+import com.matchmaking.model.QueueEntry;
+import com.matchmaking.model.Role;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.*;
+
+class BinaryQueueEntryCodecTest {
+    private static final Instant START = Instant.parse("2024-01-01T12:00:00.123Z");
+
+    private final BinaryQueueEntryCodec codec = new BinaryQueueEntryCodec();
+
+    @Test
+    void roundTrip_preservesEntry() {
+        QueueEntry entry = createEntry("player-42", "Ünïcode Näme", 2750, Role.SUPPORT, Role.JUNGLE);
+
+        QueueEntry decoded = codec.decode(codec.encode(entry));
+
+        assertThat(decoded).isEqualTo(entry);
+    }
+
+    @Test
+    void encode_isMuchSmallerThanJson() {
+        QueueEntry entry = createEntry("player-42", "ProGamer", 1500, Role.MID, Role.TOP);
+
+        byte[] binary = codec.encode(entry);
+        byte[] json = new JsonQueueEntryCodec().encode(entry);
+
+        assertThat(binary.length).isLessThan(json.length / 3);
+    }
+
+    @Test
+    void decode_readsLegacyJson() {
+        QueueEntry entry = createEntry("legacy", "Legacy Player", 1200, Role.ADC, Role.SUPPORT);
+
+        QueueEntry decoded = codec.decode(new JsonQueueEntryCodec().encode(entry));
+
+        assertThat(decoded).isEqualTo(entry);
+    }
+
+    @Test
+    void decode_rejectsUnknownVersionAndTruncatedPayload() {
+        byte[] encoded = codec.encode(createEntry("p1", "Player", 1500, Role.MID, Role.TOP));
+        byte[] unknownVersion = encoded.clone();
+        unknownVersion[0] = 9;
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 2);
+
+        assertThatThrownBy(() -> codec.decode(unknownVersion))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("version");
+        assertThatThrownBy(() -> codec.decode(truncated))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Truncated");
+    }
+
+    @Test
+    void decode_rejectsUnknownRoleOrdinal() {
+        byte[] encoded = codec.encode(createEntry("p1", "Player", 1500, Role.MID, Role.TOP));
+        // version, two length-prefixed strings and a 2-byte varint MMR precede the roles byte
+        int rolesOffset = 1 + 1 + "p1".length() + 1 + "Player".length() + 2;
+        encoded[rolesOffset] = (byte) (0xF << 4 | Role.TOP.ordinal());
+
+        assertThatThrownBy(() -> codec.decode(encoded))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("role ordinal 15")
+                .hasMessageContaining("p1");
+    }
+
+    private QueueEntry createEntry(String id, String name, int mmr, Role primary, Role secondary) {
+        return QueueEntry.create(Player.create(id, name, mmr, primary, secondary), START);
+    }
+}
@@ -0,0 +1,157 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.Player;
+import com.matchmaking.model.QueueEntry;
+import com.matchmaking.model.Role;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class DurableQueueRepositoryTest {
+    private static final Instant NOW = Instant.parse("2024-01-01T12:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void close_thenReopen_restoresQueueWithStartTimes() {
+        try (DurableQueueRepository repository = open()) {
+            repository.add(createEntry("p1", 1500, NOW.minusSeconds(120)));
+            repository.add(createEntry("p2", 1800, NOW.minusSeconds(30)));
+            repository.add(createEntry("p3", 1200, NOW));
+            repository.remove("p2");
+        }
+
+        try (DurableQueueRepository reopened = open()) {
+            assertThat(reopened.size()).isEqualTo(2);
+            assertThat(reopened.findById("p1")).contains(createEntry("p1", 1500, NOW.minusSeconds(120)));
+            assertThat(reopened.findById("p2")).isEmpty();
+            assertThat(reopened.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("p1");
+            assertThat(reopened.findByMmrRange(1000, 1300)).extracting(QueueEntry::getPlayerId).containsExactly("p3");
+        }
+    }
+
+    @Test
+    void reopen_withoutClose_replaysWriteAheadLog() {
+        DurableQueueRepository crashed = open();
+        crashed.addAllIfAbsent(List.of(createEntry("p1", 1500, NOW), createEntry("p2", 1600, NOW)));
+        crashed.snapshot();
+        crashed.add(createEntry("p3", 1700, NOW.plusSeconds(1)));
+        crashed.claimAll(List.of("p1"));
+        assertThat(crashed.addIfAbsent(createEntry("p2", 9999, NOW.plusSeconds(5)))).isFalse();
+
+        try (DurableQueueRepository reopened = open()) {
+            assertThat(reopened.findAll()).extracting(QueueEntry::getPlayerId).containsExactlyInAnyOrder("p2", "p3");
+            assertThat(reopened.findById("p2")).contains(createEntry("p2", 1600, NOW));
+        }
+    }
+
+    @Test
+    void reopen_afterClear_restoresEmptyQueue() {
+        DurableQueueRepository crashed = open();
+        crashed.add(createEntry("p1", 1500, NOW));
+        crashed.clear();
+        crashed.add(createEntry("p2", 1600, NOW));
+
+        try (DurableQueueRepository reopened = open()) {
+            assertThat(reopened.findAll()).extracting(QueueEntry::getPlayerId).containsExactly("p2");
+        }
+    }
+
+    @Test
+    void reopen_dropsTornWalTail() throws IOException {
+        DurableQueueRepository crashed = open();
+        crashed.add(createEntry("p1", 1500, NOW));
+        crashed.add(createEntry("p2", 1600, NOW));
+        Path wal = files(".wal").get(0);
+        try (RandomAccessFile file = new RandomAccessFile(wal.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        try (DurableQueueRepository reopened = open()) {
+            assertThat(reopened.findAll()).extracting(QueueEntry::getPlayerId).containsExactly("p1");
+        }
+    }
+
+    @Test
+    void snapshot_deletesSupersededFiles() throws IOException {
+        try (DurableQueueRepository repository = open()) {
+            repository.add(createEntry("p1", 1500, NOW));
+            repository.snapshot();
+            repository.snapshot();
+
+            assertThat(repository.getStats().generation()).isEqualTo(3);
+            assertThat(files(".snapshot")).extracting(path -> path.getFileName().toString())
+                    .containsExactly("queue-3.snapshot");
+            assertThat(files(".wal")).extracting(path -> path.getFileName().toString())
+                    .containsExactly("queue-3.wal");
+        }
+    }
+
+    @Test
+    void reopen_restoresLargeQueue() {
+        List<QueueEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            entries.add(createEntry("p" + i, 800 + i % 2000, NOW.minusMillis(i)));
+        }
+        try (DurableQueueRepository repository = open()) {
+            assertThat(repository.addAllIfAbsent(entries)).hasSize(100_000);
+        }
+
+        try (DurableQueueRepository reopened = open()) {
+            assertThat(reopened.size()).isEqualTo(100_000);
+            assertThat(reopened.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("p99999");
+            assertThat(reopened.findById("p4242")).contains(entries.get(4242));
+        }
+    }
+
+    @Test
+    void backgroundSnapshot_recordsLastFailureWithItsCause() throws Exception {
+        Path queueDirectory = directory.resolve("queue");
+        try (DurableQueueRepository repository =
+                     new DurableQueueRepository(new OptimizedQueueRepository(), queueDirectory, 1)) {
+            repository.add(createEntry("p1", 1500, NOW));
+            try (Stream<Path> files = Files.list(queueDirectory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(queueDirectory);
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (repository.getStats().snapshotErrors() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            DurableQueueRepository.SnapshotStats stats = repository.getStats();
+            assertThat(stats.snapshotErrors()).isPositive();
+            assertThat(stats.lastSnapshotError()).contains("FileNotFoundException");
+
+            // Lets close() write its final snapshot
+            Files.createDirectories(queueDirectory);
+        }
+    }
+
+    private DurableQueueRepository open() {
+        return new DurableQueueRepository(new OptimizedQueueRepository(), directory, 0);
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(suffix)).sorted().toList();
+        }
+    }
+
+    private QueueEntry createEntry(String id, int mmr, Instant start) {
+        return QueueEntry.create(Player.create(id, "Player " + id, mmr, Role.MID, Role.TOP), start);
+    }
+}
@@ -0,0 +1,156 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.AssignmentType;
+import com.matchmaking.model.Match;
+import com.matchmaking.model.Player;
+import com.matchmaking.model.PlayerAssignment;
+import com.matchmaking.model.Role;
+import com.matchmaking.model.Team;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class InMemoryMatchRepositoryTest {
+    private static final Instant NOW = Instant.parse("2024-01-01T12:00:00Z");
+    private static final Clock CLOCK = Clock.fixed(NOW, ZoneOffset.UTC);
+
+    @Test
+    void save_evictsOldestMatches_beyondCapacity() {
+        InMemoryMatchRepository repository = new InMemoryMatchRepository(3, null, CLOCK);
+        for (int i = 0; i < 5; i++) {
+            repository.save(createMatch("m" + i, NOW.minusSeconds(100 - i)));
+        }
+
+        assertThat(repository.count()).isEqualTo(3);
+        assertThat(repository.evictedCount()).isEqualTo(2);
+        assertThat(repository.findById("m1")).isEmpty();
+        assertThat(repository.findAll()).extracting(Match::id).containsExactly("m2", "m3", "m4");
+    }
+
+    @Test
+    void save_evictsMatchesOlderThanMaxAge() {
+        InMemoryMatchRepository repository = new InMemoryMatchRepository(100, Duration.ofHours(1), CLOCK);
+
+        repository.save(createMatch("old", NOW.minus(Duration.ofMinutes(61))));
+        repository.save(createMatch("recent", NOW.minus(Duration.ofMinutes(30))));
+
+        assertThat(repository.findById("old")).isEmpty();
+        assertThat(repository.findAll()).extracting(Match::id).containsExactly("recent");
+    }
+
+    @Test
+    void findRecent_returnsNewestFirst_regardlessOfSaveOrder() {
+        InMemoryMatchRepository repository = new InMemoryMatchRepository();
+        repository.save(createMatch("b", NOW.minusSeconds(20)));
+        repository.save(createMatch("c", NOW.minusSeconds(10)));
+        repository.save(createMatch("a", NOW.minusSeconds(30)));
+
+        assertThat(repository.findRecent(2)).extracting(Match::id).containsExactly("c", "b");
+        assertThat(repository.findRecent(10)).extracting(Match::id).containsExactly("c", "b", "a");
+    }
+
+    @Test
+    void findByCreatedAtBetween_isHalfOpenAndOrdered() {
+        InMemoryMatchRepository repository = new InMemoryMatchRepository();
+        for (int i = 0; i < 10; i++) {
+            repository.save(createMatch("m" + i, NOW.plusSeconds(i)));
+        }
+        repository.save(createMatch("m3b", NOW.plusSeconds(3)));
+
+        List<Match> range = repository.findByCreatedAtBetween(NOW.plusSeconds(3), NOW.plusSeconds(6), 100);
+
+        assertThat(range).extracting(Match::id).containsExactly("m3", "m3b", "m4", "m5");
+        assertThat(repository.findByCreatedAtBetween(NOW.plusSeconds(6), NOW.plusSeconds(3), 100)).isEmpty();
+    }
+
+    @Test
+    void findByCreatedAtBetween_stopsAtLimit_oldestFirst() {
+        InMemoryMatchRepository repository = new InMemoryMatchRepository();
+        for (int i = 0; i < 10; i++) {
+            repository.save(createMatch("m" + i, NOW.plusSeconds(i)));
+        }
+
+        assertThat(repository.findByCreatedAtBetween(NOW.plusSeconds(2), NOW.plusSeconds(9), 3))
+                .extracting(Match::id).containsExactly("m2", "m3", "m4");
+        assertThat(repository.findByCreatedAtBetween(Instant.EPOCH, Instant.MAX, 1))
+                .extracting(Match::id).containsExactly("m0");
+    }
+
+    @Test
+    void save_replacingMatch_keepsOneIndexEntry() {
+        InMemoryMatchRepository repository = new InMemoryMatchRepository();
+        repository.save(createMatch("m1", NOW.minusSeconds(10)));
+        repository.save(createMatch("m1", NOW));
+
+        assertThat(repository.count()).isEqualTo(1);
+        assertThat(repository.findAll()).extracting(Match::createdAt).containsExactly(NOW);
+    }
+
+    @Test
+    void findRecentByPlayer_returnsNewestFirst_fromPlayerRing() {
+        InMemoryMatchRepository repository = new InMemoryMatchRepository(100, null, CLOCK, 3);
+        for (int i = 0; i < 5; i++) {
+            repository.save(createMatch("m" + i, NOW.plusSeconds(i), "alice", "p" + i));
+        }
+
+        assertThat(repository.findRecentByPlayer("alice", 2)).extracting(Match::id).containsExactly("m4", "m3");
+        assertThat(repository.findRecentByPlayer("alice", 10)).extracting(Match::id)
+                .containsExactly("m4", "m3", "m2");
+        assertThat(repository.findRecentByPlayer("p1", 10)).extracting(Match::id).containsExactly("m1");
+        assertThat(repository.findRecentByPlayer("nobody", 10)).isEmpty();
+    }
+
+    @Test
+    void findRecentByPlayer_dropsEvictedMatches_andEmptyPlayers() {
+        InMemoryMatchRepository repository = new InMemoryMatchRepository(2, null, CLOCK);
+        repository.save(createMatch("m0", NOW, "alice", "bob"));
+        repository.save(createMatch("m1", NOW.plusSeconds(1), "alice", "carol"));
+        repository.save(createMatch("m2", NOW.plusSeconds(2), "dave", "carol"));
+
+        assertThat(repository.findRecentByPlayer("alice", 10)).extracting(Match::id).containsExactly("m1");
+        assertThat(repository.findRecentByPlayer("bob", 10)).isEmpty();
+        assertThat(repository.indexedPlayerCount()).isEqualTo(3);
+    }
+
+    @Test
+    void findRecentByPlayer_matchesFullScanDefault() {
+        InMemoryMatchRepository repository = new InMemoryMatchRepository(50, null, CLOCK, 50);
+        MatchRepository scanning = new MatchRepository() {
+            @Override public void save(Match match) { }
+            @Override public java.util.Optional<Match> findById(String matchId) { return repository.findById(matchId); }
+            @Override public List<Match> findAll() { return repository.findAll(); }
+            @Override public List<Match> findRecent(int limit) { return repository.findRecent(limit); }
+            @Override public List<Match> findByCreatedAtBetween(Instant from, Instant to, int limit) {
+                return repository.findByCreatedAtBetween(from, to, limit);
+            }
+            @Override public int count() { return repository.count(); }
+        };
+        for (int i = 0; i < 80; i++) {
+            repository.save(createMatch("m" + i, NOW.plusSeconds(i), "p" + (i % 7), "p" + (i % 5)));
+        }
+
+        for (int p = 0; p < 7; p++) {
+            assertThat(repository.findRecentByPlayer("p" + p, 4))
+                    .containsExactlyElementsOf(scanning.findRecentByPlayer("p" + p, 4));
+        }
+    }
+
+    private Match createMatch(String id, Instant createdAt) {
+        Team empty = Team.create(List.of());
+        return new Match(id, empty, empty, 1500, 0, createdAt);
+    }
+
+    private Match createMatch(String id, Instant createdAt, String bluePlayer, String redPlayer) {
+        Team blue = Team.create(List.of(PlayerAssignment.create(
+                Player.create(bluePlayer, bluePlayer, 1500, Role.MID, Role.TOP), Role.MID, AssignmentType.PRIMARY)));
+        Team red = Team.create(List.of(PlayerAssignment.create(
+                Player.create(redPlayer, redPlayer, 1500, Role.MID, Role.TOP), Role.MID, AssignmentType.PRIMARY)));
+        return new Match(id, blue, red, 1500, 0, createdAt);
+    }
+}
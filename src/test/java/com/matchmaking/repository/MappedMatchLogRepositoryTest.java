@@ -0,0 +1,210 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.AssignmentType;
+import com.matchmaking.model.Match;
+import com.matchmaking.model.Player;
+import com.matchmaking.model.PlayerAssignment;
+import com.matchmaking.model.Role;
+import com.matchmaking.model.Team;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MappedMatchLogRepositoryTest {
+    private static final Instant NOW = Instant.parse("2024-01-01T12:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void save_roundTripsFullMatch() {
+        try (MappedMatchLogRepository repository = new MappedMatchLogRepository(directory)) {
+            Match match = createMatch("m1", NOW.plusNanos(123_456_789), 0);
+            repository.save(match);
+
+            assertThat(repository.findById("m1")).contains(match);
+            assertThat(repository.findById("missing")).isEmpty();
+        }
+    }
+
+    @Test
+    void reopen_rebuildsIndexesFromSegments() {
+        List<Match> saved = new ArrayList<>();
+        try (MappedMatchLogRepository repository = open(Clock.fixed(NOW, ZoneOffset.UTC), 100)) {
+            for (int i = 0; i < 30; i++) {
+                Match match = createMatch("m" + i, NOW.plusSeconds(i), i);
+                repository.save(match);
+                saved.add(match);
+            }
+            assertThat(repository.segmentCount()).isGreaterThan(1);
+        }
+
+        try (MappedMatchLogRepository reopened = open(Clock.fixed(NOW, ZoneOffset.UTC), 100)) {
+            assertThat(reopened.count()).isEqualTo(30);
+            assertThat(reopened.findAll()).containsExactlyElementsOf(saved);
+            assertThat(reopened.findRecent(2)).extracting(Match::id).containsExactly("m29", "m28");
+            assertThat(reopened.findByCreatedAtBetween(NOW.plusSeconds(10), NOW.plusSeconds(12), 100))
+                    .extracting(Match::id).containsExactly("m10", "m11");
+            assertThat(reopened.findByCreatedAtBetween(NOW.plusSeconds(10), NOW.plusSeconds(20), 3))
+                    .extracting(Match::id).containsExactly("m10", "m11", "m12");
+            assertThat(reopened.findRecentByPlayer("blue-0-29", 5)).extracting(Match::id).containsExactly("m29");
+
+            reopened.save(createMatch("m30", NOW.plusSeconds(30), 30));
+            assertThat(reopened.findRecent(1)).extracting(Match::id).containsExactly("m30");
+        }
+    }
+
+    @Test
+    void save_deletesOldestSegments_beyondMaxSegments() throws IOException {
+        try (MappedMatchLogRepository repository = open(Clock.fixed(NOW, ZoneOffset.UTC), 3)) {
+            for (int i = 0; i < 60; i++) {
+                repository.save(createMatch("m" + i, NOW.plusSeconds(i), i));
+            }
+
+            assertThat(repository.segmentCount()).isEqualTo(3);
+            assertThat(segmentFiles()).hasSize(3);
+            assertThat(repository.findById("m0")).isEmpty();
+            assertThat(repository.findRecentByPlayer("blue-0-0", 5)).isEmpty();
+            assertThat(repository.findAll()).extracting(Match::id).last().isEqualTo("m59");
+            assertThat(repository.count()).isEqualTo(repository.findAll().size());
+        }
+    }
+
+    @Test
+    void save_rollsSegmentOver_whenOlderThanMaxAge() throws IOException {
+        MutableClock clock = new MutableClock(NOW);
+        try (MappedMatchLogRepository repository =
+                     new MappedMatchLogRepository(directory, 1024 * 1024, Duration.ofMinutes(10), 10, clock)) {
+            repository.save(createMatch("m0", NOW, 0));
+            clock.advance(Duration.ofMinutes(5));
+            repository.save(createMatch("m1", clock.instant(), 1));
+            clock.advance(Duration.ofMinutes(6));
+            repository.save(createMatch("m2", clock.instant(), 2));
+
+            assertThat(repository.segmentCount()).isEqualTo(2);
+            assertThat(segmentFiles()).hasSize(2);
+        }
+    }
+
+    @Test
+    void reopen_dropsTornTailRecord() throws IOException {
+        try (MappedMatchLogRepository repository = new MappedMatchLogRepository(directory)) {
+            repository.save(createMatch("m0", NOW, 0));
+            repository.save(createMatch("m1", NOW.plusSeconds(1), 1));
+        }
+        // Corrupt the last payload byte of the second record
+        Path segment = segmentFiles().get(0);
+        int firstLength;
+        int secondLength;
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(16);
+            firstLength = file.readInt();
+            file.seek(16 + 8 + firstLength);
+            secondLength = file.readInt();
+            long lastByte = 16 + 8 + firstLength + 8 + secondLength - 1;
+            file.seek(lastByte);
+            int value = file.read();
+            file.seek(lastByte);
+            file.write(value ^ 0xFF);
+        }
+
+        try (MappedMatchLogRepository reopened = new MappedMatchLogRepository(directory)) {
+            assertThat(reopened.findAll()).extracting(Match::id).containsExactly("m0");
+
+            reopened.save(createMatch("m2", NOW.plusSeconds(2), 2));
+        }
+        try (MappedMatchLogRepository reopened = new MappedMatchLogRepository(directory)) {
+            assertThat(reopened.findAll()).extracting(Match::id).containsExactly("m0", "m2");
+        }
+    }
+
+    @Test
+    void reopen_deletesNewestSegment_whenCrashLeftItWithoutHeader() throws IOException {
+        try (MappedMatchLogRepository repository = open(Clock.fixed(NOW, ZoneOffset.UTC), 10)) {
+            repository.save(createMatch("m0", NOW, 0));
+        }
+        // Preallocated but never written, as after a crash between creating and mapping it
+        Path headerless = directory.resolve(String.format("matches-%020d.log", 1));
+        Files.write(headerless, new byte[4096]);
+
+        try (MappedMatchLogRepository reopened = open(Clock.fixed(NOW, ZoneOffset.UTC), 10)) {
+            assertThat(reopened.findAll()).extracting(Match::id).containsExactly("m0");
+            assertThat(reopened.segmentCount()).isEqualTo(1);
+            assertThat(segmentFiles()).hasSize(1).doesNotContain(headerless);
+
+            reopened.save(createMatch("m1", NOW.plusSeconds(1), 1));
+        }
+        try (MappedMatchLogRepository reopened = open(Clock.fixed(NOW, ZoneOffset.UTC), 10)) {
+            assertThat(reopened.findAll()).extracting(Match::id).containsExactly("m0", "m1");
+        }
+    }
+
+    private MappedMatchLogRepository open(Clock clock, int maxSegments) {
+        return new MappedMatchLogRepository(directory, 4096, null, maxSegments, clock);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private Match createMatch(String id, Instant createdAt, int seed) {
+        Role[] roles = Role.values();
+        List<PlayerAssignment> blue = new ArrayList<>();
+        List<PlayerAssignment> red = new ArrayList<>();
+        for (int i = 0; i < roles.length; i++) {
+            Role secondary = roles[(i + 1) % roles.length];
+            blue.add(PlayerAssignment.create(Player.create("blue-" + i + "-" + seed, "Blue " + i,
+                    1500 + seed + i, roles[i], secondary), roles[i], AssignmentType.PRIMARY)
+                    .withQueueStartTime(createdAt.minusSeconds(30 + i).plusNanos(7)));
+            red.add(PlayerAssignment.create(Player.create("red-" + i + "-" + seed, "Red " + i,
+                    40 + i, secondary, roles[i]), roles[i], AssignmentType.AUTOFILL));
+        }
+        Team team1 = Team.create(blue);
+        Team team2 = Team.create(red);
+        return new Match(id, team1, team2, (team1.avgMmr() + team2.avgMmr()) / 2,
+                Math.abs(team1.avgEffectiveMmr() - team2.avgEffectiveMmr()), createdAt);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.Player;
+import com.matchmaking.model.QueueEntry;
+import com.matchmaking.model.Role;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class OptimizedQueueRepositoryTest {
+    private static final Instant START = Instant.parse("2024-01-01T12:00:00Z");
+
+    private OptimizedQueueRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new OptimizedQueueRepository();
+    }
+
+    @Test
+    void findLongestWaiting_returnsEarliestQueueStart() {
+        repository.add(createEntry("p1", 1500, START.plusSeconds(20)));
+        repository.add(createEntry("p2", 1600, START));
+        repository.add(createEntry("p3", 1700, START.plusSeconds(10)));
+
+        assertThat(repository.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("p2");
+        assertThat(repository.findAllByWaitTimePriority())
+                .extracting(QueueEntry::getPlayerId)
+                .containsExactly("p2", "p3", "p1");
+    }
+
+    @Test
+    void findLongestWaiting_isEmpty_forEmptyQueue() {
+        assertThat(repository.findLongestWaiting()).isEmpty();
+    }
+
+    @Test
+    void waitTimeIndex_keepsAllPlayersWithSameQueueStart() {
+        repository.add(createEntry("b", 1500, START));
+        repository.add(createEntry("a", 1500, START));
+        repository.add(createEntry("c", 1400, START));
+
+        assertThat(repository.findAllByWaitTimePriority())
+                .extracting(QueueEntry::getPlayerId)
+                .containsExactly("a", "b", "c");
+        assertThat(repository.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("a");
+
+        repository.remove("a");
+
+        assertThat(repository.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("b");
+        assertThat(repository.findAllByWaitTimePriority()).hasSize(2);
+    }
+
+    @Test
+    void waitTimeIndex_dropsPlayersOnDequeueAndClaim() {
+        repository.add(createEntry("p1", 1500, START));
+        repository.add(createEntry("p2", 1500, START.plusSeconds(1)));
+        repository.add(createEntry("p3", 1500, START.plusSeconds(2)));
+        repository.add(createEntry("p4", 1500, START.plusSeconds(3)));
+
+        assertThat(repository.remove("p1")).isTrue();
+        assertThat(repository.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("p2");
+
+        assertThat(repository.claimAll(List.of("p2", "p3")).isClaimed()).isTrue();
+        assertThat(repository.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("p4");
+        assertThat(repository.findAllByWaitTimePriority())
+                .extracting(QueueEntry::getPlayerId)
+                .containsExactly("p4");
+    }
+
+    @Test
+    void waitTimeIndex_reindexesPlayerOnReAdd() {
+        repository.add(createEntry("p1", 1500, START));
+        repository.add(createEntry("p2", 1500, START.plusSeconds(5)));
+
+        repository.add(createEntry("p1", 1500, START.plusSeconds(10)));
+
+        assertThat(repository.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("p2");
+        assertThat(repository.findAllByWaitTimePriority())
+                .extracting(QueueEntry::getPlayerId)
+                .containsExactly("p2", "p1");
+
+        repository.remove("p1");
+        repository.add(createEntry("p1", 1500, START));
+
+        assertThat(repository.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("p1");
+        assertThat(repository.findAllByWaitTimePriority()).hasSize(2);
+    }
+
+    private QueueEntry createEntry(String id, int mmr, Instant start) {
+        return QueueEntry.create(Player.create(id, "Player" + id, mmr, Role.MID, Role.TOP), start);
+    }
+}
@@ -0,0 +1,176 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.algorithm.MmrWindowFinder;
+import com.matchmaking.model.ClaimResult;
+import com.matchmaking.model.Player;
+import com.matchmaking.model.QueueEntry;
+import com.matchmaking.model.Role;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PackedQueueRepositoryTest {
+    private static final Instant START = Instant.parse("2024-01-01T12:00:00Z");
+
+    private PackedQueueRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new PackedQueueRepository();
+    }
+
+    @Test
+    void findById_materializesStoredEntry() {
+        QueueEntry entry = createEntry("p1", 1500, Role.MID, Role.TOP, START);
+        repository.add(entry);
+
+        Optional<QueueEntry> found = repository.findById("p1");
+
+        assertThat(found).contains(entry);
+    }
+
+    @Test
+    void findAllOrderedByMmr_keepsSlotsSortedAcrossAddAndRemove() {
+        Random random = new Random(5);
+        for (int i = 0; i < 3000; i++) {
+            repository.add(createEntry("p" + i, random.nextInt(3000), Role.TOP, Role.JUNGLE, START.plusSeconds(i)));
+        }
+        for (int i = 0; i < 3000; i += 3) {
+            assertThat(repository.remove("p" + i)).isTrue();
+        }
+
+        List<QueueEntry> ordered = repository.findAllOrderedByMmr();
+
+        assertThat(ordered).hasSize(2000);
+        assertThat(ordered).isSortedAccordingTo((a, b) -> Integer.compare(a.player().mmr(), b.player().mmr()));
+        assertThat(repository.contains("p0")).isFalse();
+        assertThat(repository.contains("p1")).isTrue();
+    }
+
+    @Test
+    void add_replacesExistingPlayer() {
+        repository.add(createEntry("p1", 1500, Role.MID, Role.TOP, START));
+        repository.add(createEntry("p1", 2000, Role.ADC, Role.SUPPORT, START.plusSeconds(5)));
+
+        assertThat(repository.size()).isEqualTo(1);
+        assertThat(repository.findById("p1").get().player().mmr()).isEqualTo(2000);
+    }
+
+    @Test
+    void addIfAbsent_keepsExistingPlayer() {
+        assertThat(repository.addIfAbsent(createEntry("p1", 1500, Role.MID, Role.TOP, START))).isTrue();
+        assertThat(repository.addIfAbsent(createEntry("p1", 2000, Role.ADC, Role.SUPPORT, START.plusSeconds(5))))
+                .isFalse();
+
+        assertThat(repository.size()).isEqualTo(1);
+        assertThat(repository.findById("p1").get().player().mmr()).isEqualTo(1500);
+    }
+
+    @Test
+    void addAllIfAbsent_andRemoveAll_keepSlotsSorted() {
+        Random random = new Random(11);
+        PackedQueueRepository reference = new PackedQueueRepository();
+        List<QueueEntry> batch = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            QueueEntry entry = createEntry("p" + i, random.nextInt(3000), Role.TOP, Role.JUNGLE,
+                    START.plusSeconds(random.nextInt(100)));
+            if (i < 500) {
+                repository.add(entry);
+            }
+            batch.add(entry);
+            reference.add(entry);
+        }
+        batch.add(createEntry("p1999", 1, Role.MID, Role.TOP, START));
+
+        List<String> added = repository.addAllIfAbsent(batch);
+        List<String> toRemove = new ArrayList<>();
+        for (int i = 0; i < 2000; i += 7) {
+            toRemove.add("p" + i);
+        }
+        toRemove.add("missing");
+        List<String> removed = repository.removeAll(toRemove);
+        toRemove.forEach(reference::remove);
+
+        assertThat(added).hasSize(1500).doesNotContain("p0").containsOnlyOnce("p1999");
+        assertThat(removed).hasSize(286).doesNotContain("missing");
+        assertThat(repository.findAllOrderedByMmr()).containsExactlyElementsOf(reference.findAllOrderedByMmr());
+        assertThat(repository.findById("p1999")).isEqualTo(reference.findById("p1999"));
+    }
+
+    @Test
+    void claimAll_isAllOrNothing() {
+        repository.add(createEntry("p1", 1500, Role.MID, Role.TOP, START));
+        repository.add(createEntry("p2", 1400, Role.ADC, Role.SUPPORT, START));
+        repository.add(createEntry("p3", 1600, Role.TOP, Role.JUNGLE, START));
+
+        ClaimResult conflict = repository.claimAll(List.of("p1", "p4"));
+        ClaimResult claimed = repository.claimAll(List.of("p1", "p3"));
+
+        assertThat(conflict.missingPlayerIds()).containsExactly("p4");
+        assertThat(claimed.isClaimed()).isTrue();
+        assertThat(repository.findAllOrderedByMmr()).extracting(QueueEntry::getPlayerId).containsExactly("p2");
+    }
+
+    @Test
+    void findByMmrRange_andLongestWaiting_useSlotArrays() {
+        repository.add(createEntry("low", 900, Role.MID, Role.TOP, START.plusSeconds(10)));
+        repository.add(createEntry("mid", 1500, Role.MID, Role.TOP, START));
+        repository.add(createEntry("high", 2100, Role.MID, Role.TOP, START.plusSeconds(20)));
+
+        assertThat(repository.findByMmrRange(1000, 2100))
+                .extracting(QueueEntry::getPlayerId)
+                .containsExactly("mid", "high");
+        assertThat(repository.findLongestWaiting().get().getPlayerId()).isEqualTo("mid");
+    }
+
+    @Test
+    void readSlots_windowScanMatchesEntryBasedScan() {
+        Random random = new Random(9);
+        Role[] roles = Role.values();
+        for (int i = 0; i < 500; i++) {
+            Role primary = roles[random.nextInt(5)];
+            Role secondary = roles[(primary.ordinal() + 1 + random.nextInt(4)) % 5];
+            repository.add(createEntry("p" + i, 1000 + random.nextInt(1000), primary, secondary, START));
+        }
+        MmrWindowFinder finder = new MmrWindowFinder();
+
+        MmrWindowFinder.WindowResult packed = repository.readSlots((mmr, packedRoles, size, materializer) ->
+                finder.findBestWindow(mmr, packedRoles, size, 10, materializer)).orElseThrow();
+        MmrWindowFinder.WindowResult expected =
+                finder.findBestWindowInMmrOrder(repository.findAllOrderedByMmr(), 10).orElseThrow();
+
+        assertThat(packed).isEqualTo(expected);
+    }
+
+    @Test
+    void findLongestWaiting_tracksRemovalsAndReAdds() {
+        repository.add(createEntry("p1", 1500, Role.MID, Role.TOP, START.plusSeconds(10)));
+        repository.add(createEntry("p2", 1200, Role.ADC, Role.SUPPORT, START));
+        repository.add(createEntry("p3", 1800, Role.TOP, Role.JUNGLE, START));
+        repository.add(createEntry("p4", 1600, Role.JUNGLE, Role.MID, START.plusSeconds(5)));
+
+        assertThat(repository.findLongestWaiting().get().getPlayerId()).isIn("p2", "p3");
+
+        repository.removeAll(List.of("p2", "p3"));
+        assertThat(repository.findLongestWaiting().get().getPlayerId()).isEqualTo("p4");
+
+        assertThat(repository.claimAll(List.of("p4")).isClaimed()).isTrue();
+        repository.add(createEntry("p1", 1500, Role.MID, Role.TOP, START.plusSeconds(30)));
+        repository.add(createEntry("p5", 1500, Role.MID, Role.TOP, START.plusSeconds(20)));
+        assertThat(repository.findLongestWaiting().get().getPlayerId()).isEqualTo("p5");
+
+        repository.clear();
+        assertThat(repository.findLongestWaiting()).isEmpty();
+    }
+
+    private QueueEntry createEntry(String id, int mmr, Role primary, Role secondary, Instant start) {
+        return QueueEntry.create(Player.create(id, "Player" + id, mmr, primary, secondary), start);
+    }
+}
@@ -0,0 +1,409 @@
+package com.matchmaking.repository;
+
+import com.matchmaking.model.ClaimResult;
+import com.matchmaking.model.Player;
+import com.matchmaking.model.QueueEntry;
+import com.matchmaking.model.Role;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RedisQueueRepositoryTest {
+    private static final int PORT = 6390;
+    private static final Instant START = Instant.parse("2024-01-01T12:00:00Z");
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, String> redisTemplate;
+
+    private RedisQueueRepository repository;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redisServer = new RedisServer(PORT);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory("localhost", PORT);
+        connectionFactory.afterPropertiesSet();
+
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashValueSerializer(new StringRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        repository = new RedisQueueRepository(redisTemplate);
+        repository.clear();
+    }
+
+    @Test
+    void add_writesHashAndBothIndexes() {
+        repository.add(createEntry("p1", 1500, START.plusSeconds(5)));
+        repository.add(createEntry("p2", 1400, START));
+
+        assertThat(repository.findById("p1")).map(e -> e.player().mmr()).contains(1500);
+        assertThat(repository.findByMmrRange(1450, 1550)).extracting(QueueEntry::getPlayerId).containsExactly("p1");
+        assertThat(repository.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("p2");
+    }
+
+    @Test
+    void findByMmrRange_returnsEntriesInMmrOrder_acrossHmgetChunks() {
+        for (int i = 0; i < 2500; i++) {
+            repository.add(createEntry("p" + i, 3000 - i, START.plusMillis(i)));
+        }
+
+        List<QueueEntry> range = repository.findByMmrRange(1000, 2400);
+
+        assertThat(range).hasSize(1401);
+        assertThat(range).isSortedAccordingTo((a, b) -> Integer.compare(a.player().mmr(), b.player().mmr()));
+        assertThat(repository.findAllByWaitTimePriority()).hasSize(2500)
+                .isSortedAccordingTo((a, b) -> a.queueStartTime().compareTo(b.queueStartTime()));
+    }
+
+    @Test
+    void addIfAbsent_leavesQueuedPlayerAndIndexesUntouched() {
+        String position = repository.latestChangeId();
+
+        assertThat(repository.addIfAbsent(createEntry("p1", 1500, START))).isTrue();
+        assertThat(repository.addIfAbsent(createEntry("p1", 2500, START.minusSeconds(60)))).isFalse();
+
+        assertThat(repository.findById("p1")).map(e -> e.player().mmr()).contains(1500);
+        assertThat(repository.findByMmrRange(2000, 3000)).isEmpty();
+        assertThat(repository.readChanges(position, 10)).hasSize(1);
+    }
+
+    @Test
+    void addAllIfAbsent_writesBatchInOneScript() {
+        repository.add(createEntry("p1", 1500, START));
+
+        List<String> added = repository.addAllIfAbsent(List.of(
+                createEntry("p0", 1400, START.plusSeconds(1)),
+                createEntry("p1", 2500, START.plusSeconds(1)),
+                createEntry("p2", 1600, START.plusSeconds(2)),
+                createEntry("p0", 2600, START.plusSeconds(3))));
+
+        assertThat(added).containsExactly("p0", "p2");
+        assertThat(repository.findByMmrRange(0, 5000)).extracting(e -> e.player().mmr())
+                .containsExactly(1400, 1500, 1600);
+        assertThat(repository.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("p1");
+    }
+
+    @Test
+    void removeAll_reportsOnlyRemovedPlayers() {
+        for (int i = 0; i < 4; i++) {
+            repository.add(createEntry("p" + i, 1500 + i * 10, START.plusSeconds(i)));
+        }
+
+        List<String> removed = repository.removeAll(List.of("p0", "missing", "p2"));
+
+        assertThat(removed).containsExactly("p0", "p2");
+        assertThat(repository.findByMmrRange(0, 5000)).extracting(QueueEntry::getPlayerId)
+                .containsExactly("p1", "p3");
+        assertThat(repository.remove("p1")).isTrue();
+        assertThat(repository.remove("p1")).isFalse();
+    }
+
+    @Test
+    void claimAll_removesPlayersFromHashAndIndexes() {
+        for (int i = 0; i < 5; i++) {
+            repository.add(createEntry("p" + i, 1500 + i * 10, START.plusSeconds(i)));
+        }
+
+        ClaimResult result = repository.claimAll(List.of("p0", "p2"));
+
+        assertThat(result.isClaimed()).isTrue();
+        assertThat(repository.size()).isEqualTo(3);
+        assertThat(repository.findByMmrRange(0, 5000)).extracting(QueueEntry::getPlayerId)
+                .containsExactly("p1", "p3", "p4");
+        assertThat(repository.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("p1");
+    }
+
+    @Test
+    void claimAll_removesNothing_whenAnyPlayerMissing() {
+        repository.add(createEntry("p1", 1500, START));
+        repository.add(createEntry("p2", 1510, START));
+
+        ClaimResult result = repository.claimAll(List.of("p1", "gone", "p2"));
+
+        assertThat(result.isClaimed()).isFalse();
+        assertThat(result.missingPlayerIds()).containsExactly("gone");
+        assertThat(repository.size()).isEqualTo(2);
+        assertThat(repository.findByMmrRange(0, 5000)).hasSize(2);
+    }
+
+    @Test
+    void binaryCodec_readsEntriesWrittenAsJson() {
+        repository.add(createEntry("legacy", 1500, START));
+        RedisQueueRepository binaryRepository = new RedisQueueRepository(redisTemplate, new BinaryQueueEntryCodec());
+        binaryRepository.add(createEntry("compact", 1510, START.plusSeconds(1)));
+
+        assertThat(binaryRepository.findAll()).extracting(QueueEntry::getPlayerId)
+                .containsExactlyInAnyOrder("legacy", "compact");
+        assertThat(binaryRepository.findByMmrRange(0, 5000)).extracting(QueueEntry::getPlayerId)
+                .containsExactly("legacy", "compact");
+        assertThat(binaryRepository.findById("compact")).map(e -> e.player().mmr()).contains(1510);
+    }
+
+    @Test
+    void claimAll_letsExactlyOneOfConcurrentClaimersWin() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            repository.add(createEntry("p" + i, 1500 + i, START));
+            ids.add("p" + i);
+        }
+        int claimers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(claimers);
+        CountDownLatch startGate = new CountDownLatch(1);
+
+        List<Future<ClaimResult>> futures = new ArrayList<>();
+        for (int c = 0; c < claimers; c++) {
+            futures.add(executor.submit(() -> {
+                startGate.await();
+                return repository.claimAll(ids);
+            }));
+        }
+        startGate.countDown();
+
+        int claimed = 0;
+        for (Future<ClaimResult> future : futures) {
+            ClaimResult result = future.get(10, TimeUnit.SECONDS);
+            if (result.isClaimed()) {
+                claimed++;
+            } else {
+                assertThat(result.missingPlayerIds()).containsExactlyElementsOf(ids);
+            }
+        }
+        executor.shutdown();
+
+        assertThat(claimed).isEqualTo(1);
+        assertThat(repository.size()).isZero();
+    }
+
+    @Test
+    void getBucketDistribution_countsNonEmptyBucketsInRedis() {
+        Random random = new Random(3);
+        Map<Integer, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            int mmr = random.nextBoolean() ? 800 + random.nextInt(400) : 2000 + random.nextInt(300);
+            repository.add(createEntry("p" + i, mmr, START));
+            expected.merge((mmr / 100) * 100, 1, Integer::sum);
+        }
+        repository.add(createEntry("edge", 1300, START));
+        expected.merge(1300, 1, Integer::sum);
+
+        assertThat(repository.getBucketDistribution()).containsExactlyEntriesOf(expected);
+        assertThat(repository.getBucketDistribution()).doesNotContainKey(1500);
+    }
+
+    @Test
+    void getBucketDistribution_isEmptyForEmptyQueue() {
+        assertThat(repository.getBucketDistribution()).isEmpty();
+    }
+
+    @Test
+    void mirror_convergesWithWritesFromAnotherNode() {
+        repository.add(createEntry("before", 1500, START));
+        MirroredQueueRepository mirror = new MirroredQueueRepository(
+                new RedisQueueRepository(redisTemplate, new BinaryQueueEntryCodec()), 20);
+        mirror.resync();
+        RedisQueueRepository otherNode = new RedisQueueRepository(redisTemplate, new BinaryQueueEntryCodec());
+
+        otherNode.add(createEntry("p1", 1400, START.plusSeconds(1)));
+        otherNode.add(createEntry("p2", 1600, START.plusSeconds(2)));
+        otherNode.claimAll(List.of("before"));
+        otherNode.add(createEntry("p1", 1450, START.plusSeconds(3)));
+
+        assertThat(mirror.contains("p1")).isFalse();
+        assertThat(mirror.poll()).isEqualTo(4);
+        assertThat(mirror.findAllOrderedByMmr()).extracting(QueueEntry::getPlayerId)
+                .containsExactly("p1", "p2");
+        assertThat(mirror.findById("p1")).map(e -> e.player().mmr()).contains(1450);
+        assertThat(mirror.findLongestWaiting()).map(QueueEntry::getPlayerId).contains("p2");
+    }
+
+    @Test
+    void mirror_claimsInRedis_andRejectsPlayersTakenByAnotherNode() {
+        for (int i = 0; i < 4; i++) {
+            repository.add(createEntry("p" + i, 1500 + i, START));
+        }
+        MirroredQueueRepository mirror = new MirroredQueueRepository(repository, 20);
+        mirror.resync();
+        new RedisQueueRepository(redisTemplate).claimAll(List.of("p0"));
+
+        ClaimResult conflict = mirror.claimAll(List.of("p0", "p1"));
+        ClaimResult claimed = mirror.claimAll(List.of("p1", "p2"));
+
+        assertThat(conflict.missingPlayerIds()).containsExactly("p0");
+        assertThat(claimed.isClaimed()).isTrue();
+        assertThat(mirror.findAll()).extracting(QueueEntry::getPlayerId).containsExactly("p3");
+        assertThat(repository.findAll()).extracting(QueueEntry::getPlayerId).containsExactly("p3");
+
+        mirror.poll();
+        assertThat(mirror.findAll()).extracting(QueueEntry::getPlayerId).containsExactly("p3");
+    }
+
+    @Test
+    void mirror_resyncs_whenStreamWasTrimmedPastItsPosition() {
+        repository.add(createEntry("before", 1500, START));
+        MirroredQueueRepository mirror = new MirroredQueueRepository(repository, 20);
+        mirror.resync();
+
+        // Tailer stopped while other nodes keep writing and the capped stream is trimmed
+        RedisQueueRepository otherNode = new RedisQueueRepository(redisTemplate);
+        for (int i = 0; i < 5; i++) {
+            otherNode.add(createEntry("p" + i, 1400 + i, START.plusSeconds(i)));
+        }
+        otherNode.remove("before");
+        redisTemplate.opsForStream().trim("matchmaking:queue:changes", 2);
+
+        assertThat(mirror.poll()).isZero();
+
+        MirroredQueueRepository.MirrorStats stats = mirror.getStats();
+        assertThat(stats.streamGaps()).isEqualTo(1);
+        assertThat(stats.resyncs()).isEqualTo(2);
+        assertThat(mirror.findAllOrderedByMmr()).extracting(QueueEntry::getPlayerId)
+                .containsExactly("p0", "p1", "p2", "p3", "p4");
+
+        otherNode.add(createEntry("p5", 1600, START));
+        assertThat(mirror.poll()).isEqualTo(1);
+        assertThat(mirror.getStats().streamGaps()).isEqualTo(1);
+        assertThat(mirror.contains("p5")).isTrue();
+    }
+
+    @Test
+    void mirror_doesNotResync_whenStreamIsUntrimmed() {
+        MirroredQueueRepository mirror = new MirroredQueueRepository(repository, 20);
+        mirror.resync();
+
+        repository.add(createEntry("p1", 1500, START));
+        repository.remove("p1");
+
+        assertThat(mirror.poll()).isEqualTo(2);
+        assertThat(mirror.getStats().resyncs()).isEqualTo(1);
+        assertThat(mirror.getStats().streamGaps()).isZero();
+    }
+
+    @Test
+    void mirror_doesNotReviveRemovedPlayer_whenTailerPassedTheWriteFirst() {
+        RedisQueueRepository otherNode = new RedisQueueRepository(redisTemplate);
+        AtomicReference<MirroredQueueRepository> mirrorRef = new AtomicReference<>();
+        // Between the Redis write and its local apply: another node removes the player
+        // and the tailer catches up with both events
+        RedisQueueRepository racingRemote = new RedisQueueRepository(redisTemplate) {
+            @Override
+            String addPublished(QueueEntry entry) {
+                String changeId = super.addPublished(entry);
+                otherNode.remove(entry.getPlayerId());
+                mirrorRef.get().poll();
+                return changeId;
+            }
+        };
+        MirroredQueueRepository mirror = new MirroredQueueRepository(racingRemote, 20);
+        mirrorRef.set(mirror);
+        mirror.resync();
+
+        mirror.add(createEntry("p1", 1500, START));
+
+        assertThat(repository.contains("p1")).isFalse();
+        assertThat(mirror.contains("p1")).isFalse();
+        assertThat(mirror.findByMmrRange(1400, 1600)).isEmpty();
+    }
+
+    @Test
+    void mirror_recordsLastSyncError_andResyncsAfterAFailedPoll() throws InterruptedException {
+        AtomicBoolean failReads = new AtomicBoolean(true);
+        RedisQueueRepository flakyRemote = new RedisQueueRepository(redisTemplate) {
+            @Override
+            List<Change> readChanges(String afterId, int count) {
+                if (failReads.get()) {
+                    throw new IllegalStateException("stream unavailable");
+                }
+                return super.readChanges(afterId, count);
+            }
+        };
+        MirroredQueueRepository mirror = new MirroredQueueRepository(flakyRemote, 10);
+        mirror.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (mirror.getStats().syncErrors() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            MirroredQueueRepository.MirrorStats failed = mirror.getStats();
+            assertThat(failed.syncErrors()).isPositive();
+            assertThat(failed.lastSyncError()).contains("IllegalStateException").contains("stream unavailable");
+
+            // Every failed poll drops the position, so recovery goes through a resync
+            long resyncs = mirror.getStats().resyncs();
+            failReads.set(false);
+            repository.add(createEntry("p1", 1500, START));
+            deadline = System.currentTimeMillis() + 5_000;
+            while (!mirror.contains("p1") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(mirror.contains("p1")).isTrue();
+            assertThat(mirror.getStats().resyncs()).isGreaterThan(resyncs);
+        } finally {
+            mirror.stop();
+        }
+    }
+
+    @Test
+    void mirror_appliesOwnWritesBeforeTheTailerReadsThem() {
+        MirroredQueueRepository mirror = new MirroredQueueRepository(repository, 20);
+        mirror.resync();
+
+        mirror.add(createEntry("p1", 1500, START));
+        mirror.addAllIfAbsent(List.of(createEntry("p2", 1400, START), createEntry("p1", 1600, START)));
+        assertThat(mirror.findAllOrderedByMmr()).extracting(QueueEntry::getPlayerId).containsExactly("p2", "p1");
+
+        assertThat(mirror.remove("p2")).isTrue();
+        assertThat(mirror.contains("p2")).isFalse();
+
+        assertThat(mirror.poll()).isEqualTo(3);
+        assertThat(mirror.findAll()).extracting(QueueEntry::getPlayerId).containsExactly("p1");
+    }
+
+    @Test
+    void changeStream_isNotWritten_whenPublishingDisabled() {
+        RedisQueueRepository silent = new RedisQueueRepository(redisTemplate, new JsonQueueEntryCodec(), 0);
+        String position = silent.latestChangeId();
+
+        silent.add(createEntry("p1", 1500, START));
+        silent.remove("p1");
+
+        assertThat(silent.readChanges(position, 10)).isEmpty();
+    }
+
+    private QueueEntry createEntry(String id, int mmr, Instant start) {
+        return QueueEntry.create(Player.create(id, "Player " + id, mmr, Role.MID, Role.TOP), start);
+    }
+}
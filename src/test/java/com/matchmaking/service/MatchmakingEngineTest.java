@@ -0,0 +1,338 @@
+package com.matchmaking.service;
+
+import com.matchmaking.algorithm.MmrWindowFinder;
+import com.matchmaking.config.MatchmakingConfig;
+import com.matchmaking.metrics.MatchmakingMetrics;
+import com.matchmaking.model.Match;
+import com.matchmaking.model.Player;
+import com.matchmaking.model.QueueEntry;
+import com.matchmaking.model.Role;
+import com.matchmaking.repository.InMemoryMatchRepository;
+import com.matchmaking.repository.InMemoryQueueRepository;
+import com.matchmaking.repository.MatchRepository;
+import com.matchmaking.repository.PackedQueueRepository;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MatchmakingEngineTest {
+    private SimpleMeterRegistry registry;
+    private MatchRepository matchRepository;
+    private QueueService queueService;
+    private MatchmakingConfig config;
+    private MatchmakingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        matchRepository = new InMemoryMatchRepository();
+        Clock fixedClock = Clock.fixed(Instant.parse("2024-01-01T12:00:00Z"), ZoneOffset.UTC);
+        queueService = new QueueService(new InMemoryQueueRepository(), fixedClock);
+        config = new MatchmakingConfig();
+        MatchmakingMetrics metrics = new MatchmakingMetrics(registry);
+
+        MatchmakingService matchmakingService = new MatchmakingService(
+                queueService,
+                new RoleAssignmentService(),
+                new TeamBalancerService(),
+                new MmrWindowFinder(),
+                matchRepository,
+                config,
+                fixedClock,
+                metrics
+        );
+        engine = new MatchmakingEngine(matchmakingService, queueService, metrics, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.stop();
+    }
+
+    @Test
+    void tick_drainsQueueInOneTick() {
+        enqueuePlayers(50);
+
+        List<Match> matches = engine.tick();
+
+        assertThat(matches).hasSize(5);
+        assertThat(queueService.getQueueSize()).isZero();
+        assertThat(matchRepository.count()).isEqualTo(5);
+    }
+
+    @Test
+    void tick_respectsMaxMatchesPerTick() {
+        config.setMaxMatchesPerTick(2);
+        enqueuePlayers(50);
+
+        List<Match> matches = engine.tick();
+
+        assertThat(matches).hasSize(2);
+        assertThat(queueService.getQueueSize()).isEqualTo(30);
+    }
+
+    @Test
+    void tick_overPackedQueue_materializesOnlyCandidatesAndSelectedWindows() {
+        Clock fixedClock = Clock.fixed(Instant.parse("2024-01-01T12:00:00Z"), ZoneOffset.UTC);
+        CountingPackedQueueRepository packed = new CountingPackedQueueRepository();
+        queueService = new QueueService(packed, fixedClock);
+        config.setMaxMatchesPerTick(3);
+        MatchmakingMetrics metrics = new MatchmakingMetrics(registry);
+        MatchmakingService service = new MatchmakingService(queueService, new RoleAssignmentService(),
+                new TeamBalancerService(), new MmrWindowFinder(), matchRepository, config, fixedClock, metrics);
+        MatchmakingEngine packedEngine = new MatchmakingEngine(service, queueService, metrics, config);
+        Role[] roles = Role.values();
+        for (int i = 0; i < 1000; i++) {
+            queueService.enqueue(Player.create("p" + i, "Player" + i, 1000 + i, roles[i % 5], roles[(i + 1) % 5]));
+        }
+
+        try {
+            List<Match> matches = packedEngine.tick();
+
+            assertThat(matches).hasSize(3);
+            assertThat(queueService.getQueueSize()).isEqualTo(970);
+            // The anchor's tolerance band and the two selected windows, not the whole queue
+            assertThat(packed.materialized).isLessThan(200);
+        } finally {
+            packedEngine.stop();
+        }
+    }
+
+    @Test
+    void tick_recordsStatsAndMetrics() {
+        enqueuePlayers(25);
+
+        engine.tick();
+
+        MatchmakingEngine.EngineStats stats = engine.getStats();
+        assertThat(stats.ticks()).isEqualTo(1);
+        assertThat(stats.matchesCreated()).isEqualTo(2);
+        assertThat(stats.lastTickMatches()).isEqualTo(2);
+        assertThat(stats.backlog()).isEqualTo(5);
+        assertThat(registry.get("matchmaking.engine.tick_duration").timer().count()).isEqualTo(1);
+        assertThat(registry.get("matchmaking.engine.matches_per_tick").summary().totalAmount()).isEqualTo(2);
+        assertThat(registry.get("matchmaking.engine.backlog").gauge().value()).isEqualTo(5);
+    }
+
+    @Test
+    void tick_recordsPipelineStages() {
+        enqueuePlayers(25);
+
+        engine.tick();
+
+        assertThat(stageTimer("snapshot").count()).isEqualTo(2);
+        assertThat(stageTimer("window_search").count()).isEqualTo(2);
+        assertThat(stageTimer("role_assignment").count()).isGreaterThanOrEqualTo(2);
+        assertThat(stageTimer("balancing").count()).isGreaterThanOrEqualTo(2);
+        assertThat(stageTimer("removal").count()).isEqualTo(2);
+        assertThat(stageTimer("persistence").count()).isEqualTo(2);
+        assertThat(registry.get("matchmaking.pipeline.candidates_scanned").counter().count()).isGreaterThanOrEqualTo(15);
+        assertThat(registry.get("matchmaking.pipeline.windows_evaluated").counter().count()).isPositive();
+        assertThat(registry.get("matchmaking.pipeline.unbalanced_windows").counter().count()).isZero();
+    }
+
+    @Test
+    void tick_recordsWaitTimePerPlayer() {
+        enqueuePlayers(25);
+
+        engine.tick();
+
+        long recorded = registry.get("matchmaking.queue.wait_time").timers().stream()
+                .mapToLong(Timer::count)
+                .sum();
+        assertThat(recorded).isEqualTo(20);
+        // Every enqueued player is in the 1500-1590 MMR band
+        assertThat(registry.get("matchmaking.queue.wait_time").tag("rank", "gold").timers().stream()
+                .mapToLong(Timer::count)
+                .sum()).isEqualTo(20);
+    }
+
+    @Test
+    void start_runsTicksOnEngineThread() throws InterruptedException {
+        config.setTickIntervalMs(10);
+        enqueuePlayers(20);
+
+        engine.start();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (queueService.getQueueSize() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(queueService.getQueueSize()).isZero();
+        assertThat(engine.getStats().running()).isTrue();
+        assertThat(engine.getStats().matchesCreated()).isEqualTo(2);
+    }
+
+    @Test
+    void start_doesNothing_whenDisabled() throws InterruptedException {
+        config.setEngineEnabled(false);
+        config.setTickIntervalMs(10);
+        enqueuePlayers(20);
+
+        engine.start();
+        Thread.sleep(100);
+
+        assertThat(engine.getStats().running()).isFalse();
+        assertThat(queueService.getQueueSize()).isEqualTo(20);
+    }
+
+    @Test
+    void requestTick_isRejected_afterStop() {
+        engine.stop();
+
+        assertThat(engine.requestTick()).isFalse();
+    }
+
+    @Test
+    void requestTick_isRejected_whenDisabled() {
+        config.setEngineEnabled(false);
+        enqueuePlayers(20);
+
+        assertThat(engine.requestTick()).isFalse();
+        assertThat(engine.getStats().ticks()).isZero();
+        assertThat(queueService.getQueueSize()).isEqualTo(20);
+    }
+
+    @Test
+    void requestTick_mergesRequestsIntoOnePendingTick() throws InterruptedException {
+        CountDownLatch tickEntered = new CountDownLatch(1);
+        CountDownLatch releaseTick = new CountDownLatch(1);
+        QueueService blockingQueue = new QueueService(new InMemoryQueueRepository()) {
+            @Override
+            public int getQueueSize() {
+                tickEntered.countDown();
+                try {
+                    releaseTick.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getQueueSize();
+            }
+        };
+        MatchmakingService service = new MatchmakingService(blockingQueue, new RoleAssignmentService(),
+                new TeamBalancerService(), new MmrWindowFinder(), matchRepository, config);
+        MatchmakingEngine blockedEngine = new MatchmakingEngine(
+                service, blockingQueue, new MatchmakingMetrics(registry), config);
+        try {
+            assertThat(blockedEngine.requestTick()).isTrue();
+            assertThat(tickEntered.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // The first tick is running, so all of these merge into a single pending tick
+            for (int i = 0; i < 1000; i++) {
+                assertThat(blockedEngine.requestTick()).isTrue();
+            }
+            releaseTick.countDown();
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (blockedEngine.getStats().ticks() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(50);
+
+            assertThat(blockedEngine.getStats().ticks()).isEqualTo(2);
+        } finally {
+            releaseTick.countDown();
+            blockedEngine.stop();
+        }
+    }
+
+    @Test
+    void requestedTick_recordsLastError_whenTickFails() throws InterruptedException {
+        QueueService failingQueue = new QueueService(new InMemoryQueueRepository()) {
+            @Override
+            public int getQueueSize() {
+                throw new IllegalStateException("queue unavailable");
+            }
+        };
+        MatchmakingService service = new MatchmakingService(failingQueue, new RoleAssignmentService(),
+                new TeamBalancerService(), new MmrWindowFinder(), matchRepository, config);
+        MatchmakingEngine failingEngine = new MatchmakingEngine(
+                service, failingQueue, new MatchmakingMetrics(registry), config);
+        try {
+            assertThat(failingEngine.requestTick()).isTrue();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (failingEngine.getStats().tickErrors() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            MatchmakingEngine.EngineStats stats = failingEngine.getStats();
+            assertThat(stats.tickErrors()).isEqualTo(1);
+            assertThat(stats.lastTickError()).contains("IllegalStateException").contains("queue unavailable");
+        } finally {
+            failingEngine.stop();
+        }
+    }
+
+    /**
+     * Counts every entry the repository hands out, fails on whole-queue reads
+     */
+    private static final class CountingPackedQueueRepository extends PackedQueueRepository {
+        private int materialized;
+
+        @Override
+        public <T> T readSlots(SlotReader<T> reader) {
+            return super.readSlots((mmr, packedRoles, size, materializer) ->
+                    reader.read(mmr, packedRoles, size, slot -> {
+                        materialized++;
+                        return materializer.apply(slot);
+                    }));
+        }
+
+        @Override
+        public Optional<QueueEntry> findById(String playerId) {
+            Optional<QueueEntry> entry = super.findById(playerId);
+            materialized += entry.isPresent() ? 1 : 0;
+            return entry;
+        }
+
+        @Override
+        public List<QueueEntry> findByMmrRange(int minMmr, int maxMmr) {
+            List<QueueEntry> entries = super.findByMmrRange(minMmr, maxMmr);
+            materialized += entries.size();
+            return entries;
+        }
+
+        @Override
+        public Optional<QueueEntry> findLongestWaiting() {
+            Optional<QueueEntry> entry = super.findLongestWaiting();
+            materialized += entry.isPresent() ? 1 : 0;
+            return entry;
+        }
+
+        @Override
+        public List<QueueEntry> findAll() {
+            throw new AssertionError("whole queue materialized");
+        }
+
+        @Override
+        public List<QueueEntry> findAllOrderedByMmr() {
+            throw new AssertionError("whole queue materialized");
+        }
+    }
+
+    private Timer stageTimer(String stage) {
+        return registry.get("matchmaking.pipeline.stage_duration").tag("stage", stage).timer();
+    }
+
+    private void enqueuePlayers(int count) {
+        Role[] roles = Role.values();
+        for (int i = 0; i < count; i++) {
+            Role primary = roles[i % 5];
+            Role secondary = roles[(i + 1) % 5];
+            Player player = Player.create("p" + i, "Player" + i, 1500 + (i % 10) * 10, primary, secondary);
+            queueService.enqueue(player);
+        }
+    }
+}
@@ -2,10 +2,12 @@ package com.matchmaking.service;
 
 import com.matchmaking.algorithm.MmrWindowFinder;
 import com.matchmaking.config.MatchmakingConfig;
+import com.matchmaking.metrics.PipelineListener;
 import com.matchmaking.model.*;
 import com.matchmaking.repository.InMemoryMatchRepository;
 import com.matchmaking.repository.InMemoryQueueRepository;
 import com.matchmaking.repository.MatchRepository;
+import com.matchmaking.repository.OptimizedQueueRepository;
 import com.matchmaking.repository.QueueRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,6 +15,11 @@ import org.junit.jupiter.api.Test;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -173,6 +180,194 @@ class MatchmakingServiceTest {
         }
     }
 
+    @Test
+    void createMatches_drainsQueueInOnePass() {
+        enqueuePlayers(30);
+
+        List<Match> matches = matchmakingService.createMatches(10);
+
+        assertThat(matches).hasSize(3);
+        assertThat(matchRepository.count()).isEqualTo(3);
+        assertThat(queueService.getQueueSize()).isEqualTo(0);
+
+        Set<String> matchedIds = new HashSet<>();
+        for (Match match : matches) {
+            matchedIds.addAll(match.playerIds());
+        }
+        assertThat(matchedIds).hasSize(30);
+    }
+
+    @Test
+    void createMatches_respectsMaxMatches() {
+        enqueuePlayers(30);
+
+        List<Match> matches = matchmakingService.createMatches(2);
+
+        assertThat(matches).hasSize(2);
+        assertThat(queueService.getQueueSize()).isEqualTo(10);
+    }
+
+    @Test
+    void createMatches_returnsEmpty_whenNotEnoughPlayers() {
+        enqueuePlayers(9);
+
+        List<Match> matches = matchmakingService.createMatches(5);
+
+        assertThat(matches).isEmpty();
+        assertThat(queueService.getQueueSize()).isEqualTo(9);
+    }
+
+    @Test
+    void tryCreateAnchoredMatch_includesLongestWaitingPlayer() {
+        enqueuePlayers(20);
+        Instant now = Instant.parse("2024-01-01T12:00:00Z");
+        Player anchor = Player.create("anchor", "Anchor", 1560, Role.MID, Role.TOP);
+        queueRepository.add(QueueEntry.create(anchor, now.minusSeconds(30)));
+
+        MatchResult result = matchmakingService.tryCreateAnchoredMatch();
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(queueService.isInQueue("anchor")).isFalse();
+        assertThat(queueService.getQueueSize()).isEqualTo(11);
+    }
+
+    @Test
+    void tryCreateAnchoredMatch_failsWhenNoCandidatesWithinTolerance() {
+        enqueuePlayers(20);
+        Instant now = Instant.parse("2024-01-01T12:00:00Z");
+        Player outlier = Player.create("outlier", "Outlier", 1800, Role.MID, Role.TOP);
+        queueRepository.add(QueueEntry.create(outlier, now.minusSeconds(30)));
+
+        MatchResult result = matchmakingService.tryCreateAnchoredMatch();
+
+        assertThat(result.isFailure()).isTrue();
+        assertThat(result.failureReason()).contains("Not enough players within 100 MMR");
+        assertThat(queueService.getQueueSize()).isEqualTo(21);
+    }
+
+    @Test
+    void tryCreateAnchoredMatch_widensToleranceWithWaitTime() {
+        enqueuePlayers(20);
+        Instant now = Instant.parse("2024-01-01T12:00:00Z");
+        Player outlier = Player.create("outlier", "Outlier", 1800, Role.MID, Role.TOP);
+        queueRepository.add(QueueEntry.create(outlier, now.minusSeconds(360)));
+        config.setMaxMmrDiff(500);
+
+        MatchResult result = matchmakingService.tryCreateAnchoredMatch();
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(queueService.isInQueue("outlier")).isFalse();
+    }
+
+    @Test
+    void tryCreateMatch_neverDoubleBooksPlayers_withConcurrentMatchers() throws Exception {
+        queueService = new QueueService(new OptimizedQueueRepository(), fixedClock);
+        enqueuePlayers(500);
+        int matchers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(matchers);
+        CountDownLatch startGate = new CountDownLatch(1);
+
+        List<Future<List<Match>>> futures = new ArrayList<>();
+        for (int m = 0; m < matchers; m++) {
+            MatchmakingService matcher = new MatchmakingService(queueService, roleAssignmentService,
+                    teamBalancerService, mmrWindowFinder, matchRepository, config, fixedClock);
+            futures.add(executor.submit(() -> {
+                startGate.await();
+                List<Match> created = new ArrayList<>();
+                MatchResult result;
+                while ((result = matcher.tryCreateMatch()).isSuccess()) {
+                    created.add(result.match());
+                }
+                return created;
+            }));
+        }
+        startGate.countDown();
+
+        List<String> matchedIds = new ArrayList<>();
+        for (Future<List<Match>> future : futures) {
+            for (Match match : future.get(30, TimeUnit.SECONDS)) {
+                matchedIds.addAll(match.playerIds());
+            }
+        }
+        executor.shutdown();
+
+        assertThat(matchedIds).doesNotHaveDuplicates();
+        assertThat(matchedIds).hasSize(matchRepository.count() * 10);
+        assertThat(matchedIds.size() + queueService.getQueueSize()).isEqualTo(500);
+    }
+
+    @Test
+    void createMatches_carriesQueueStartTimes() {
+        Instant now = Instant.now(fixedClock);
+        Role[] roles = Role.values();
+        for (int i = 0; i < 10; i++) {
+            Player player = Player.create("p" + i, "Player" + i, 1500 + i * 10, roles[i % 5], roles[(i + 1) % 5]);
+            queueRepository.add(QueueEntry.create(player, now.minusSeconds(i * 10L)));
+        }
+
+        List<Match> matches = matchmakingService.createMatches(1);
+
+        assertThat(matches).hasSize(1);
+        List<PlayerAssignment> assignments = new ArrayList<>(matches.get(0).team1().roster().values());
+        assignments.addAll(matches.get(0).team2().roster().values());
+        assertThat(assignments).hasSize(10).allSatisfy(assignment -> {
+            int index = Integer.parseInt(assignment.player().id().substring(1));
+            assertThat(assignment.queueStartTime()).isEqualTo(now.minusSeconds(index * 10L));
+        });
+    }
+
+    @Test
+    void tryCreateMatch_reportsSnapshotStageAndWindowCountsFromTheFinder() {
+        List<PipelineListener.Stage> stages = new ArrayList<>();
+        int[] windows = new int[2];
+        PipelineListener recording = new PipelineListener() {
+            @Override
+            public void stageCompleted(Stage stage, long durationNanos) {
+                stages.add(stage);
+            }
+
+            @Override
+            public void windowsEvaluated(int count) {
+                windows[0] += count;
+            }
+
+            @Override
+            public void windowsRejected(int count) {
+                windows[1] += count;
+            }
+        };
+        MatchmakingService instrumented = new MatchmakingService(queueService, roleAssignmentService,
+                teamBalancerService, mmrWindowFinder, matchRepository, config, fixedClock, recording);
+        enqueuePlayers(15);
+
+        assertThat(instrumented.tryCreateMatch().isSuccess()).isTrue();
+
+        assertThat(stages).startsWith(PipelineListener.Stage.SNAPSHOT, PipelineListener.Stage.WINDOW_SEARCH)
+                .contains(PipelineListener.Stage.ROLE_ASSIGNMENT, PipelineListener.Stage.BALANCING,
+                        PipelineListener.Stage.REMOVAL, PipelineListener.Stage.PERSISTENCE);
+        assertThat(windows).containsExactly(6, 5);
+    }
+
+    @Test
+    void createMatches_reportsWindowsRejectedForMmrDifference() {
+        int[] unbalanced = new int[1];
+        PipelineListener recording = new PipelineListener() {
+            @Override
+            public void windowUnbalanced() {
+                unbalanced[0]++;
+            }
+        };
+        MatchmakingService instrumented = new MatchmakingService(queueService, roleAssignmentService,
+                teamBalancerService, mmrWindowFinder, matchRepository, config, fixedClock, recording);
+        config.setMaxMmrDiff(-1);
+        enqueuePlayers(30);
+
+        assertThat(instrumented.createMatches(5)).isEmpty();
+
+        assertThat(unbalanced[0]).isEqualTo(3);
+        assertThat(queueService.getQueueSize()).isEqualTo(30);
+    }
+
     private void enqueuePlayers(int count) {
         Role[] roles = Role.values();
         for (int i = 0; i < count; i++) {
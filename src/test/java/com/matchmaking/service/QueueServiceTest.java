@@ -1,9 +1,11 @@
 package com.matchmaking.service;
 
+import com.matchmaking.model.ClaimResult;
 import com.matchmaking.model.Player;
 import com.matchmaking.model.QueueEntry;
 import com.matchmaking.model.Role;
 import com.matchmaking.repository.InMemoryQueueRepository;
+import com.matchmaking.repository.OptimizedQueueRepository;
 import com.matchmaking.repository.QueueRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,8 +13,14 @@ import org.junit.jupiter.api.Test;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -49,6 +57,62 @@ class QueueServiceTest {
                 .hasMessageContaining("already in queue");
     }
 
+    @Test
+    void enqueueAll_skipsQueuedAndRepeatedPlayers() {
+        queueService.enqueue(Player.create("p2", "Player2", 1500, Role.MID, Role.TOP));
+
+        List<QueueEntry> enqueued = queueService.enqueueAll(List.of(
+                Player.create("p1", "Player1", 1400, Role.ADC, Role.SUPPORT),
+                Player.create("p2", "Player2", 1600, Role.MID, Role.TOP),
+                Player.create("p3", "Player3", 1700, Role.TOP, Role.JUNGLE),
+                Player.create("p1", "Player1", 2000, Role.ADC, Role.SUPPORT)));
+
+        assertThat(enqueued).extracting(QueueEntry::getPlayerId).containsExactly("p1", "p3");
+        assertThat(queueService.getQueueSize()).isEqualTo(3);
+        assertThat(queueService.getQueueStatus("p1")).map(e -> e.player().mmr()).contains(1400);
+        assertThat(queueService.getQueueStatus("p2")).map(e -> e.player().mmr()).contains(1500);
+    }
+
+    @Test
+    void enqueue_concurrentDuplicates_leaveOneIndexedEntry() throws Exception {
+        OptimizedQueueRepository optimized = new OptimizedQueueRepository();
+        QueueService service = new QueueService(optimized, fixedClock);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int round = 0; round < 200; round++) {
+            String playerId = "p" + round;
+            CountDownLatch startGate = new CountDownLatch(1);
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Player player = Player.create(playerId, "Player", 1000 + t * 150, Role.MID, Role.TOP);
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    try {
+                        service.enqueue(player);
+                        return true;
+                    } catch (IllegalStateException e) {
+                        return false;
+                    }
+                }));
+            }
+            startGate.countDown();
+
+            int enqueued = 0;
+            for (Future<Boolean> future : futures) {
+                enqueued += future.get(10, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertThat(enqueued).isEqualTo(1);
+        }
+        executor.shutdown();
+
+        assertThat(optimized.size()).isEqualTo(200);
+        assertThat(optimized.findAllOrderedByMmr()).hasSize(200);
+        assertThat(optimized.findAllByWaitTimePriority()).hasSize(200);
+        assertThat(optimized.getBucketDistribution().values().stream().mapToInt(Integer::intValue).sum())
+                .isEqualTo(200);
+    }
+
     @Test
     void dequeue_removesPlayerFromQueue() {
         Player player = Player.create("p1", "Player1", 1500, Role.MID, Role.TOP);
@@ -126,4 +190,29 @@ class QueueServiceTest {
         assertThat(queueService.getQueueSize()).isEqualTo(1);
         assertThat(queueService.isInQueue("p3")).isTrue();
     }
+
+    @Test
+    void claimAll_removesAllPlayers_whenAllQueued() {
+        queueService.enqueue(Player.create("p1", "Player1", 1500, Role.MID, Role.TOP));
+        queueService.enqueue(Player.create("p2", "Player2", 1600, Role.ADC, Role.SUPPORT));
+        queueService.enqueue(Player.create("p3", "Player3", 1700, Role.JUNGLE, Role.TOP));
+
+        ClaimResult result = queueService.claimAll(List.of("p1", "p2"));
+
+        assertThat(result.isClaimed()).isTrue();
+        assertThat(result.missingPlayerIds()).isEmpty();
+        assertThat(queueService.getQueueSize()).isEqualTo(1);
+    }
+
+    @Test
+    void claimAll_removesNothing_whenAnyPlayerMissing() {
+        queueService.enqueue(Player.create("p1", "Player1", 1500, Role.MID, Role.TOP));
+        queueService.enqueue(Player.create("p2", "Player2", 1600, Role.ADC, Role.SUPPORT));
+
+        ClaimResult result = queueService.claimAll(List.of("p1", "gone", "p2"));
+
+        assertThat(result.isClaimed()).isFalse();
+        assertThat(result.missingPlayerIds()).containsExactly("gone");
+        assertThat(queueService.getQueueSize()).isEqualTo(2);
+    }
 }
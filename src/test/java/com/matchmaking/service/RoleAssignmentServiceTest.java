@@ -143,6 +143,86 @@ class RoleAssignmentServiceTest {
         assertThat(highAssignment.get().assignmentType()).isEqualTo(AssignmentType.PRIMARY);
     }
 
+    @Test
+    void assignRoles_avoidsAutofill_whenSecondaryReshuffleExists() {
+        List<Player> players = new ArrayList<>();
+        // Three MID mains; greedy would give MID to the top two and autofill "low"
+        players.add(Player.create("high", "High", 2000, Role.MID, Role.ADC));
+        players.add(Player.create("mid", "Mid", 1500, Role.MID, Role.TOP));
+        players.add(Player.create("low", "Low", 1000, Role.MID, Role.TOP));
+        players.add(Player.create("t1", "Top1", 1500, Role.TOP, Role.JUNGLE));
+        players.add(Player.create("t2", "Top2", 1500, Role.TOP, Role.JUNGLE));
+        players.add(Player.create("j1", "Jungle1", 1500, Role.JUNGLE, Role.TOP));
+        players.add(Player.create("j2", "Jungle2", 1500, Role.JUNGLE, Role.TOP));
+        players.add(Player.create("a1", "Adc1", 1500, Role.ADC, Role.SUPPORT));
+        players.add(Player.create("s1", "Support1", 1500, Role.SUPPORT, Role.ADC));
+        players.add(Player.create("s2", "Support2", 1500, Role.SUPPORT, Role.ADC));
+
+        List<PlayerAssignment> assignments = roleAssignmentService.assignRoles(players).orElseThrow();
+
+        assertThat(assignments).noneMatch(a -> a.assignmentType() == AssignmentType.AUTOFILL);
+        int totalPenalty = assignments.stream().mapToInt(a -> a.assignmentType().getMmrPenalty()).sum();
+        assertThat(totalPenalty).isEqualTo(AssignmentType.SECONDARY.getMmrPenalty());
+        PlayerAssignment high = assignments.stream()
+                .filter(a -> a.player().id().equals("high"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(high.assignedRole()).isEqualTo(Role.ADC);
+    }
+
+    @Test
+    void assignRoles_isStableAcrossRepeatedCalls() {
+        List<Player> players = createPlayers(10);
+
+        List<PlayerAssignment> first = roleAssignmentService.assignRoles(players).orElseThrow();
+        for (int i = 0; i < 100; i++) {
+            assertThat(roleAssignmentService.assignRoles(players)).contains(first);
+        }
+    }
+
+    @Test
+    void assignRoles_reusesCachedPattern_forSameRoleSignature() {
+        List<Player> players = createPerfectDistributionPlayers();
+        List<Player> shifted = players.stream()
+                .map(p -> Player.create(p.id() + "-b", p.displayName(), p.mmr() + 300, p.primaryRole(), p.secondaryRole()))
+                .toList();
+
+        roleAssignmentService.assignRoles(players);
+        List<PlayerAssignment> assignments = roleAssignmentService.assignRoles(shifted).orElseThrow();
+
+        assertThat(roleAssignmentService.cachedSignatureCount()).isEqualTo(1);
+        assertThat(assignments).allMatch(a -> a.assignmentType() == AssignmentType.PRIMARY);
+        assertThat(assignments).allMatch(a -> a.player().id().endsWith("-b"));
+    }
+
+    @Test
+    void assignRoles_stopsCaching_whenCacheIsFull() {
+        RoleAssignmentService bounded = new RoleAssignmentService(1);
+
+        bounded.assignRoles(createPerfectDistributionPlayers());
+        Optional<List<PlayerAssignment>> result = bounded.assignRoles(createPlayers(10));
+
+        assertThat(result).isPresent();
+        assertThat(bounded.cachedSignatureCount()).isEqualTo(1);
+    }
+
+    @Test
+    void assignmentPenalty_matchesAssignRoles() {
+        List<Player> players = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            players.add(Player.create("p" + i, "Player" + i, 1500 + i * 10, Role.MID, Role.TOP));
+        }
+
+        int penalty = roleAssignmentService.assignmentPenalty(players);
+
+        int expected = roleAssignmentService.assignRoles(players).orElseThrow().stream()
+                .mapToInt(a -> a.assignmentType().getMmrPenalty())
+                .sum();
+        assertThat(penalty).isEqualTo(expected)
+                .isEqualTo(2 * AssignmentType.SECONDARY.getMmrPenalty() + 6 * AssignmentType.AUTOFILL.getMmrPenalty());
+        assertThat(roleAssignmentService.assignmentPenalty(createPlayers(5))).isEqualTo(-1);
+    }
+
     private List<Player> createPlayers(int count) {
         List<Player> players = new ArrayList<>();
         Role[] roles = Role.values();
@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -115,6 +116,71 @@ class TeamBalancerServiceTest {
         assertThat(result.team2().avgMmr()).isEqualTo(team2Sum / 5);
     }
 
+    @Test
+    void balanceTeams_throwsException_whenRoleHasThreePlayers() {
+        List<PlayerAssignment> assignments = createBalancedAssignments();
+        Player extra = Player.create("extra", "Extra", 1500, Role.TOP, Role.MID);
+        assignments.set(9, PlayerAssignment.create(extra, Role.TOP, AssignmentType.PRIMARY));
+
+        assertThatThrownBy(() -> teamBalancerService.balanceTeams(assignments))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("exactly 2 players");
+    }
+
+    @Test
+    void balanceTeams_findsPerfectSplit_whenGreedyWouldNot() {
+        // Pair gaps 300, 300, 200, 200, 200: alternating greedy ends 200 apart, 300+300 vs 3x200 is exact
+        int[][] pairs = {{1800, 1500}, {1800, 1500}, {1700, 1500}, {1700, 1500}, {1700, 1500}};
+
+        TeamBalancerService.TeamBalanceResult result = teamBalancerService.balanceTeams(assignmentsFor(pairs));
+
+        assertThat(result.mmrDifference()).isEqualTo(0);
+    }
+
+    @Test
+    void balanceTeams_matchesBruteForceOptimum() {
+        Random random = new Random(7);
+
+        for (int round = 0; round < 500; round++) {
+            int[][] pairs = new int[5][2];
+            for (int[] pair : pairs) {
+                pair[0] = 1000 + random.nextInt(1000);
+                pair[1] = 1000 + random.nextInt(1000);
+            }
+
+            TeamBalancerService.TeamBalanceResult result = teamBalancerService.balanceTeams(assignmentsFor(pairs));
+
+            assertThat(result.mmrDifference()).isEqualTo(bruteForceDiff(pairs));
+        }
+    }
+
+    private List<PlayerAssignment> assignmentsFor(int[][] pairs) {
+        List<PlayerAssignment> assignments = new ArrayList<>();
+        Role[] roles = Role.values();
+        for (int r = 0; r < pairs.length; r++) {
+            for (int k = 0; k < 2; k++) {
+                Player player = Player.create("p" + r + k, "Player" + r + k, pairs[r][k], roles[r], roles[(r + 1) % 5]);
+                assignments.add(PlayerAssignment.create(player, roles[r], AssignmentType.PRIMARY));
+            }
+        }
+        return assignments;
+    }
+
+    private int bruteForceDiff(int[][] pairs) {
+        int best = Integer.MAX_VALUE;
+        for (int mask = 0; mask < 32; mask++) {
+            int team1 = 0;
+            int team2 = 0;
+            for (int r = 0; r < 5; r++) {
+                int bit = (mask >> r) & 1;
+                team1 += pairs[r][bit];
+                team2 += pairs[r][1 - bit];
+            }
+            best = Math.min(best, Math.abs(team1 / 5 - team2 / 5));
+        }
+        return best;
+    }
+
     private List<PlayerAssignment> createAssignments(int count) {
         List<PlayerAssignment> assignments = new ArrayList<>();
         Role[] roles = Role.values();
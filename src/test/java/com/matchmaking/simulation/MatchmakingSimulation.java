@@ -244,6 +244,42 @@ class MatchmakingSimulation {
         }
     }
 
+    @Test
+    @DisplayName("Simulation: Batch extraction benchmark")
+    void benchmarkBatchPerformance() {
+        printHeader("BATCH EXTRACTION BENCHMARK");
+
+        int[] sizes = {100, 500, 1000, 5000, 10000};
+
+        System.out.println("Queue Size | Match Time | Matches | Matches/sec");
+        System.out.println("─".repeat(55));
+
+        for (int size : sizes) {
+            queueRepository.clear();
+            for (Player player : generatePlayers(size)) {
+                queueService.enqueue(player);
+            }
+
+            // Drain the queue with batch passes until a pass produces nothing
+            int matchCount = 0;
+            long startMatch = System.nanoTime();
+            while (queueService.getQueueSize() >= 10) {
+                int created = matchmakingService.createMatches(Integer.MAX_VALUE).size();
+                if (created == 0) break;
+                matchCount += created;
+            }
+            long matchNanos = System.nanoTime() - startMatch;
+
+            double matchesPerSec = matchCount * 1_000_000_000.0 / matchNanos;
+
+            System.out.printf("%10d | %8.2fms | %7d | %10.1f%n",
+                    size,
+                    matchNanos / 1_000_000.0,
+                    matchCount,
+                    matchesPerSec);
+        }
+    }
+
     private List<Player> generatePlayers(int count) {
         return IntStream.range(0, count)
                 .mapToObj(this::generatePlayer)